@@ -74,6 +74,68 @@ public interface IPage<T> extends Serializable {
         return null;
     }
 
+    /**
+     * 估算总数【 默认: false 】
+     * <p>
+     * 使用数据库执行计划估计的行数作为总数, 不执行 count 查询, 数据库不支持时退化为 count 查询
+     *
+     * @return true 是 / false 否
+     * @since 3.4.3
+     */
+    default boolean estimateCount() {
+        return false;
+    }
+
+    /**
+     * count 上限, 超过该值时只计到该值并且 {@link #totalExact()} 为 false
+     *
+     * @since 3.4.3
+     */
+    default Long countLimit() {
+        return null;
+    }
+
+    /**
+     * 总数是否为精确值(估算或者达到 count 上限时为 false)
+     *
+     * @since 3.4.3
+     */
+    default boolean totalExact() {
+        return true;
+    }
+
+    /**
+     * 设置总数是否为精确值
+     * <p>
+     * 默认不做任何操作
+     *
+     * @since 3.4.3
+     */
+    default IPage<T> setTotalExact(boolean totalExact) {
+        return this;
+    }
+
+    /**
+     * 不进行 count 查询, 而是多查一条来判断是否有下一页【 默认: false 】
+     *
+     * @return true 是 / false 否
+     * @since 3.4.3
+     */
+    default boolean searchHasNext() {
+        return false;
+    }
+
+    /**
+     * 设置是否有下一页, {@link #searchHasNext()} 为 true 时由分页插件设置
+     * <p>
+     * 默认不做任何操作
+     *
+     * @since 3.4.3
+     */
+    default IPage<T> setHasNext(boolean hasNext) {
+        return this;
+    }
+
     /**
      * 当前分页总页数
      */
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.injector;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.injector.DefaultSqlInjector;
+import com.baomidou.mybatisplus.extension.injector.methods.AlwaysUpdateSomeColumnById;
+import com.baomidou.mybatisplus.extension.injector.methods.InsertBatchSomeColumn;
+import com.baomidou.mybatisplus.extension.injector.methods.UpsertBatch;
+
+import java.util.List;
+
+/**
+ * 在 {@link DefaultSqlInjector} 的基础上注入批量操作方法
+ * <ul>
+ * <li> {@link InsertBatchSomeColumn}: 逻辑删除字段为 null 时写入未删除值 </li>
+ * <li> {@link AlwaysUpdateSomeColumnById} </li>
+ * <li> {@link UpsertBatch}: 指定了数据库类型并且支持时注入 </li>
+ * </ul>
+ * <p>
+ * {@link com.baomidou.mybatisplus.extension.toolkit.SqlHelper} 的 saveBatchValues、upsertBatch、updateAllColumnBatchById
+ * 以及 {@link com.baomidou.mybatisplus.extension.toolkit.BulkLoader} 的多行 values 写入使用这些方法, 需要在启动时注册本注入器
+ * (或者在自己的注入器中加入上面的方法), 例如 spring boot 中声明一个 ISqlInjector 的 bean
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public class BatchSqlInjector extends DefaultSqlInjector {
+
+    private final DbType dbType;
+
+    /**
+     * 不注入 {@link UpsertBatch}
+     */
+    public BatchSqlInjector() {
+        this(null);
+    }
+
+    /**
+     * @param dbType 数据库类型, 决定 {@link UpsertBatch} 的语法
+     */
+    public BatchSqlInjector(DbType dbType) {
+        this.dbType = dbType;
+    }
+
+    @Override
+    public List<AbstractMethod> getMethodList(Class<?> mapperClass) {
+        List<AbstractMethod> methodList = super.getMethodList(mapperClass);
+        methodList.add(new InsertBatchSomeColumn().setLogicNotDeleteValue(true));
+        methodList.add(new AlwaysUpdateSomeColumnById());
+        if (dbType != null && UpsertBatch.supports(dbType)) {
+            methodList.add(new UpsertBatch(dbType));
+        }
+        return methodList;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.injector;
+
+import com.baomidou.mybatisplus.core.injector.DefaultSqlInjector;
+import com.baomidou.mybatisplus.core.injector.ISqlInjector;
+import com.baomidou.mybatisplus.core.toolkit.Assert;
+import com.baomidou.mybatisplus.core.toolkit.StringPool;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserCache;
+import com.baomidou.mybatisplus.extension.plugins.inner.TenantLineInnerInterceptor;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 在注入 CRUD 方法时就完成租户改写的 SQL 注入器
+ * <p>
+ * 包装另一个 {@link ISqlInjector}, 把它注入的 MappedStatement 的 SqlSource 替换为 {@link TenantLineSqlSource},
+ * 运行时只有 xml 或注解中手写的 sql 才需要 {@link TenantLineInnerInterceptor} 解析
+ * </p>
+ * <p>
+ * 要求 {@link TenantLineInnerInterceptor#isTenantIdAsParameter()} 为 true, 并且 {@link com.baomidou.mybatisplus.extension.plugins.handler.TenantLineHandler#ignoreTable(String)}
+ * 的结果与运行时上下文无关
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public class TenantLineSqlInjector implements ISqlInjector {
+
+    private final ISqlInjector sqlInjector;
+    private final TenantLineInnerInterceptor tenantLineInnerInterceptor;
+    private final JsqlParserCache sqlCache;
+
+    public TenantLineSqlInjector(TenantLineInnerInterceptor tenantLineInnerInterceptor) {
+        this(new DefaultSqlInjector(), tenantLineInnerInterceptor);
+    }
+
+    public TenantLineSqlInjector(ISqlInjector sqlInjector, TenantLineInnerInterceptor tenantLineInnerInterceptor) {
+        this(sqlInjector, tenantLineInnerInterceptor, new JsqlParserCache(1024));
+    }
+
+    /**
+     * @param sqlInjector                实际注入 CRUD 方法的注入器
+     * @param tenantLineInnerInterceptor 租户插件, 必须开启 tenantIdAsParameter
+     * @param sqlCache                   生成的 sql 与改写结果的缓存
+     */
+    public TenantLineSqlInjector(ISqlInjector sqlInjector, TenantLineInnerInterceptor tenantLineInnerInterceptor, JsqlParserCache sqlCache) {
+        Assert.isTrue(tenantLineInnerInterceptor.isTenantIdAsParameter(), "TenantLineSqlInjector requires tenantIdAsParameter");
+        this.sqlInjector = sqlInjector;
+        this.tenantLineInnerInterceptor = tenantLineInnerInterceptor;
+        this.sqlCache = sqlCache;
+    }
+
+    @Override
+    public void inspectInject(MapperBuilderAssistant builderAssistant, Class<?> mapperClass) {
+        Configuration configuration = builderAssistant.getConfiguration();
+        String prefix = mapperClass.getName() + StringPool.DOT;
+        Set<String> loaded = statementIds(configuration, prefix);
+        sqlInjector.inspectInject(builderAssistant, mapperClass);
+        for (String id : statementIds(configuration, prefix)) {
+            if (!loaded.contains(id)) {
+                MappedStatement ms = configuration.getMappedStatement(id, false);
+                if (willRewrite(ms)) {
+                    SystemMetaObject.forObject(ms).setValue("sqlSource", new TenantLineSqlSource(configuration, ms.getSqlSource(),
+                        tenantLineInnerInterceptor, sqlCache, ms.getSqlCommandType() != SqlCommandType.SELECT));
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否在注入时改写该 MappedStatement
+     *
+     * @param ms 注入的 MappedStatement
+     * @return 是否改写
+     */
+    protected boolean willRewrite(MappedStatement ms) {
+        return ms.getStatementType() == StatementType.PREPARED && ms.getSqlCommandType() != SqlCommandType.UNKNOWN
+            && ms.getSqlCommandType() != SqlCommandType.FLUSH && tenantLineInnerInterceptor.willInterceptExecutor(ms);
+    }
+
+    private Set<String> statementIds(Configuration configuration, String prefix) {
+        Set<String> ids = new HashSet<>();
+        for (String name : configuration.getMappedStatementNames()) {
+            // 只要当前 mapper 的全名 id, 排除 selectKey 等
+            if (name.startsWith(prefix) && name.indexOf(StringPool.DOT, prefix.length()) < 0
+                && !name.contains(StringPool.EXCLAMATION_MARK)) {
+                ids.add(name);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.injector;
+
+import com.baomidou.mybatisplus.extension.parser.JsqlParserCache;
+import com.baomidou.mybatisplus.extension.plugins.inner.TenantLineInnerInterceptor;
+import lombok.Getter;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 注入时就确定了租户改写的 SqlSource
+ * <p>
+ * 租户条件以参数 ? 的形式写入 sql, 同一条生成的 sql 只经过一次 JsqlParser, 之后直接复用改写结果并绑定当前租户 ID
+ * </p>
+ * <p>
+ * 被包装的 MappedStatement 不会再被 {@link TenantLineInnerInterceptor} 在运行时处理
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public class TenantLineSqlSource implements SqlSource {
+
+    private final Configuration configuration;
+    @Getter
+    private final SqlSource sqlSource;
+    private final TenantLineInnerInterceptor tenantLineInnerInterceptor;
+    private final JsqlParserCache sqlCache;
+    /**
+     * 是否按多条语句解析(非 select)
+     */
+    private final boolean multi;
+
+    public TenantLineSqlSource(Configuration configuration, SqlSource sqlSource, TenantLineInnerInterceptor tenantLineInnerInterceptor,
+                               JsqlParserCache sqlCache, boolean multi) {
+        this.configuration = configuration;
+        this.sqlSource = sqlSource;
+        this.tenantLineInnerInterceptor = tenantLineInnerInterceptor;
+        this.sqlCache = sqlCache;
+        this.multi = multi;
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
+        String sql = boundSql.getSql();
+        String rewritten = sqlCache.get(this, sql, null);
+        if (rewritten == null) {
+            rewritten = multi ? tenantLineInnerInterceptor.parserMulti(sql, null) : tenantLineInnerInterceptor.parserSingle(sql, null);
+            sqlCache.put(this, sql, null, rewritten);
+        }
+        tenantLineInnerInterceptor.bindTenantIdParameter(boundSql, configuration, rewritten);
+        return boundSql;
+    }
+}
@@ -21,8 +21,8 @@ import com.baomidou.mybatisplus.core.injector.AbstractMethod;
 import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
 import com.baomidou.mybatisplus.core.metadata.TableInfo;
 import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.StringPool;
 import com.baomidou.mybatisplus.core.toolkit.sql.SqlScriptUtils;
-import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -48,6 +48,7 @@ import java.util.function.Predicate;
  * </p>
  *
  * <li> 注意: 这是自选字段 insert !!,如果个别字段在 entity 里为 null 但是数据库中有配置默认值, insert 后数据库字段是为 null 而不是默认值 </li>
+ * <li> 注意: 逻辑删除字段同理, 可以使用 {@link #setLogicNotDeleteValue(boolean)} 在为 null 时写入未删除值 </li>
  *
  * <p>
  * 常用的 {@link Predicate}:
@@ -62,7 +63,6 @@ import java.util.function.Predicate;
  */
 
 @NoArgsConstructor
-@AllArgsConstructor
 @SuppressWarnings("serial")
 public class InsertBatchSomeColumn extends AbstractMethod {
 
@@ -72,6 +72,18 @@ public class InsertBatchSomeColumn extends AbstractMethod {
     @Setter
     @Accessors(chain = true)
     private Predicate<TableFieldInfo> predicate;
+    /**
+     * 逻辑删除字段在 entity 里为 null 时写入未删除值
+     *
+     * @since 3.4.3
+     */
+    @Setter
+    @Accessors(chain = true)
+    private boolean logicNotDeleteValue;
+
+    public InsertBatchSomeColumn(Predicate<TableFieldInfo> predicate) {
+        this.predicate = predicate;
+    }
 
     @SuppressWarnings("Duplicates")
     @Override
@@ -83,7 +95,8 @@ public class InsertBatchSomeColumn extends AbstractMethod {
             this.filterTableFieldInfo(fieldList, predicate, TableFieldInfo::getInsertSqlColumn, EMPTY);
         String columnScript = LEFT_BRACKET + insertSqlColumn.substring(0, insertSqlColumn.length() - 1) + RIGHT_BRACKET;
         String insertSqlProperty = tableInfo.getKeyInsertSqlProperty(ENTITY_DOT, false) +
-            this.filterTableFieldInfo(fieldList, predicate, i -> i.getInsertSqlProperty(ENTITY_DOT), EMPTY);
+            this.filterTableFieldInfo(fieldList, predicate, i -> logicNotDeleteValue && i.isLogicDelete()
+                ? logicDeleteInsertValue(i, ENTITY_DOT) + COMMA : i.getInsertSqlProperty(ENTITY_DOT), EMPTY);
         insertSqlProperty = LEFT_BRACKET + insertSqlProperty.substring(0, insertSqlProperty.length() - 1) + RIGHT_BRACKET;
         String valuesScript = SqlScriptUtils.convertForeach(insertSqlProperty, "list", null, ENTITY, COMMA);
         String keyProperty = null;
@@ -108,6 +121,22 @@ public class InsertBatchSomeColumn extends AbstractMethod {
         return this.addInsertMappedStatement(mapperClass, modelClass, getMethod(sqlMethod), sqlSource, keyGenerator, keyProperty, keyColumn);
     }
 
+    /**
+     * 逻辑删除字段的值, 为 null 时是未删除值
+     *
+     * @param field  逻辑删除字段
+     * @param prefix 前缀
+     * @return sql 脚本
+     */
+    static String logicDeleteInsertValue(TableFieldInfo field, String prefix) {
+        String value = field.getInsertSqlProperty(prefix);
+        String notDeleteValue = field.getLogicNotDeleteValue();
+        String otherwise = StringPool.NULL.equalsIgnoreCase(notDeleteValue) ? StringPool.NULL
+            : String.format(field.isCharSequence() ? "'%s'" : "%s", notDeleteValue);
+        return SqlScriptUtils.convertChoose(prefix + field.getProperty() + " != null",
+            value.substring(0, value.length() - 1), otherwise);
+    }
+
     @Override
     public String getMethod(SqlMethod sqlMethod) {
         // 自定义 mapper 方法名
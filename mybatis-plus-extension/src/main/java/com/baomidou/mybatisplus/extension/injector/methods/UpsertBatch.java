@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.injector.methods;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.Assert;
+import com.baomidou.mybatisplus.core.toolkit.StringPool;
+import com.baomidou.mybatisplus.core.toolkit.sql.SqlScriptUtils;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * 批量插入或更新, 使用数据库原生的 upsert 语法, 一条语句处理多行, 根据主键判断是否已存在
+ * <ul>
+ * <li> mysql, mariadb: INSERT ... ON DUPLICATE KEY UPDATE </li>
+ * <li> postgresql, kingbase, highgo, sqlite: INSERT ... ON CONFLICT (主键) DO UPDATE </li>
+ * <li> oracle, 达梦, h2, sqlserver(2008 及以上), db2: MERGE INTO ... USING </li>
+ * </ul>
+ * <p>
+ * 自己的通用 mapper 如下使用:
+ * <pre>
+ * int upsertBatch(List<T> entityList);
+ * </pre>
+ * </p>
+ *
+ * <li> 注意: 所有字段都会写入, 实体中为 null 的字段是 null 而不是数据库默认值(逻辑删除字段为未删除值), 主键不能为 null </li>
+ * <li> 注意: 已存在时不更新逻辑删除字段和填充策略为 INSERT、UPDATE 的字段(语句按 insert 执行, 只会执行 insertFill) </li>
+ * <li> 注意: 已存在时乐观锁字段在原值上加 1, 不比较实体中的版本 </li>
+ * <li> 注意: 租户插件不会改写该语句, 多租户的表不要直接使用, {@link com.baomidou.mybatisplus.extension.toolkit.SqlHelper} 遇到时会退化为先查询 </li>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+@SuppressWarnings("serial")
+public class UpsertBatch extends AbstractMethod {
+
+    private final DbType dbType;
+    /**
+     * 字段筛选条件
+     */
+    @Setter
+    @Accessors(chain = true)
+    private Predicate<TableFieldInfo> predicate;
+
+    public UpsertBatch(DbType dbType) {
+        Assert.isTrue(supports(dbType), "upsertBatch does not support the database: %s", dbType.getDb());
+        this.dbType = dbType;
+    }
+
+    public UpsertBatch(DbType dbType, Predicate<TableFieldInfo> predicate) {
+        this(dbType);
+        this.predicate = predicate;
+    }
+
+    /**
+     * jdbc:sqlserver: 的 url 解析为 {@link DbType#SQL_SERVER2005}, 实际是否支持(2008 及以上)需要运行时按数据库版本判断
+     *
+     * @param dbType 数据库类型
+     * @return 是否支持该数据库
+     */
+    public static boolean supports(DbType dbType) {
+        switch (dbType) {
+            case MYSQL:
+            case MARIADB:
+            case POSTGRE_SQL:
+            case KINGBASE_ES:
+            case HIGH_GO:
+            case SQLITE:
+            case ORACLE:
+            case ORACLE_12C:
+            case DM:
+            case SQL_SERVER:
+            case SQL_SERVER2005:
+            case DB2:
+            case H2:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public MappedStatement injectMappedStatement(Class<?> mapperClass, Class<?> modelClass, TableInfo tableInfo) {
+        if (!tableInfo.havePK()) {
+            logger.warn(String.format("%s has no primary key, ignoring the injection of upsertBatch", modelClass.getName()));
+            return null;
+        }
+        List<TableFieldInfo> fieldList = predicate == null ? tableInfo.getFieldList()
+            : tableInfo.getFieldList().stream().filter(predicate).collect(Collectors.toList());
+        String keyColumn = tableInfo.getKeyColumn();
+        List<String> columns = new ArrayList<>(fieldList.size() + 1);
+        List<String> values = new ArrayList<>(fieldList.size() + 1);
+        List<String> updateColumns = new ArrayList<>(fieldList.size());
+        String versionColumn = null;
+        columns.add(keyColumn);
+        values.add(SqlScriptUtils.safeParam(ENTITY_DOT + tableInfo.getKeyProperty()));
+        for (TableFieldInfo field : fieldList) {
+            columns.add(field.getColumn());
+            if (field.isLogicDelete()) {
+                values.add(InsertBatchSomeColumn.logicDeleteInsertValue(field, ENTITY_DOT));
+            } else {
+                String value = field.getInsertSqlProperty(ENTITY_DOT);
+                values.add(value.substring(0, value.length() - 1));
+            }
+            if (field.isVersion()) {
+                versionColumn = field.getColumn();
+            } else if (!field.isLogicDelete() && field.getFieldFill() != FieldFill.INSERT && field.getFieldFill() != FieldFill.UPDATE) {
+                // 语句按 insert 执行, 只有 insertFill, 填充策略为 UPDATE 的字段没有值
+                updateColumns.add(field.getColumn());
+            }
+        }
+        String columnScript = String.join(COMMA, columns);
+        String rowScript = LEFT_BRACKET + String.join(COMMA, values) + RIGHT_BRACKET;
+        String table = tableInfo.getTableName();
+        String sql;
+        switch (dbType) {
+            case MYSQL:
+            case MARIADB:
+                sql = String.format("INSERT INTO %s (%s) VALUES %s ON DUPLICATE KEY UPDATE %s", table, columnScript,
+                    foreach(rowScript, COMMA), updateColumns.isEmpty() && versionColumn == null ? keyColumn + EQUALS + keyColumn
+                        : updateSet(StringPool.EMPTY, updateColumns, c -> "VALUES(" + c + RIGHT_BRACKET, versionColumn, StringPool.EMPTY));
+                break;
+            case POSTGRE_SQL:
+            case KINGBASE_ES:
+            case HIGH_GO:
+            case SQLITE:
+                sql = String.format("INSERT INTO %s (%s) VALUES %s ON CONFLICT (%s) %s", table, columnScript,
+                    foreach(rowScript, COMMA), keyColumn, updateColumns.isEmpty() && versionColumn == null ? "DO NOTHING"
+                        : "DO UPDATE SET " + updateSet(StringPool.EMPTY, updateColumns, c -> "EXCLUDED." + c, versionColumn, table + StringPool.DOT));
+                break;
+            case ORACLE:
+            case ORACLE_12C:
+            case DM:
+            case H2:
+                List<String> selectItems = new ArrayList<>(columns.size());
+                for (int i = 0; i < columns.size(); i++) {
+                    selectItems.add(values.get(i) + " AS " + columns.get(i));
+                }
+                String selectScript = "SELECT " + String.join(COMMA, selectItems) + " FROM DUAL";
+                String using = foreach(selectScript, " UNION ALL ");
+                if (dbType == DbType.H2) {
+                    // h2 无法推断只有参数的列的类型, 先 union 一个不返回数据的原表查询
+                    using = "SELECT " + columnScript + " FROM " + table + " WHERE 1 = 0 UNION ALL " + using;
+                }
+                sql = merge(table, "(" + using + ") s", columns, updateColumns, versionColumn, keyColumn);
+                break;
+            case SQL_SERVER:
+            case SQL_SERVER2005:
+                // sqlserver 的 MERGE 必须以分号结束
+                sql = merge(table, "(VALUES " + foreach(rowScript, COMMA) + ") s (" + columnScript + ")",
+                    columns, updateColumns, versionColumn, keyColumn) + SEMICOLON;
+                break;
+            default:
+                sql = merge(table, "(VALUES " + foreach(rowScript, COMMA) + ") s (" + columnScript + ")",
+                    columns, updateColumns, versionColumn, keyColumn);
+        }
+        SqlSource sqlSource = languageDriver.createSqlSource(configuration, "<script>\n" + sql + "\n</script>", modelClass);
+        return this.addInsertMappedStatement(mapperClass, modelClass, getMethod(null), sqlSource, new NoKeyGenerator(), null, null);
+    }
+
+    private String merge(String table, String using, List<String> columns, List<String> updateColumns, String versionColumn,
+                         String keyColumn) {
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(table).append(" t USING ").append(using)
+            .append(" ON (t.").append(keyColumn).append(" = s.").append(keyColumn).append(RIGHT_BRACKET);
+        if (!updateColumns.isEmpty() || versionColumn != null) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ").append(updateSet("t.", updateColumns, c -> "s." + c, versionColumn, "t."));
+        }
+        return sql.append(" WHEN NOT MATCHED THEN INSERT (").append(String.join(COMMA, columns)).append(") VALUES (")
+            .append(join(columns, c -> "s." + c)).append(RIGHT_BRACKET).toString();
+    }
+
+    /**
+     * 已存在时更新的字段, 乐观锁字段在原值上加 1
+     *
+     * @param targetPrefix  被更新字段的前缀
+     * @param updateColumns 更新的字段
+     * @param newValue      字段的新值
+     * @param versionColumn 乐观锁字段
+     * @param currentPrefix 引用已存在行的字段时的前缀
+     */
+    private String updateSet(String targetPrefix, List<String> updateColumns, Function<String, String> newValue,
+                             String versionColumn, String currentPrefix) {
+        List<String> sets = updateColumns.stream().map(c -> targetPrefix + c + EQUALS + newValue.apply(c)).collect(Collectors.toList());
+        if (versionColumn != null) {
+            sets.add(targetPrefix + versionColumn + EQUALS + currentPrefix + versionColumn + " + 1");
+        }
+        return String.join(COMMA, sets);
+    }
+
+    private String foreach(String itemScript, String separator) {
+        return SqlScriptUtils.convertForeach(itemScript, "list", null, ENTITY, separator);
+    }
+
+    private String join(List<String> columns, Function<String, String> mapper) {
+        return columns.stream().map(mapper).collect(Collectors.joining(COMMA));
+    }
+
+    @Override
+    public String getMethod(SqlMethod sqlMethod) {
+        // 自定义 mapper 方法名
+        return "upsertBatch";
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.parser;
+
+import com.baomidou.mybatisplus.core.toolkit.Assert;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link JsqlParserSupport} 改写结果缓存(LRU)
+ * <p>
+ * key 由 插件实例 + 原始 sql + 上下文 key 组成, 命中时直接返回上次改写的 sql, 不再经过 JsqlParser
+ * </p>
+ * <p>
+ * 多个插件可以共用同一个缓存实例
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public class JsqlParserCache {
+
+    private final int maximumSize;
+    private final Map<Key, String> cache;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param maximumSize 最大缓存条数
+     */
+    public JsqlParserCache(int maximumSize) {
+        Assert.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+        this.maximumSize = maximumSize;
+        this.cache = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                if (size() > JsqlParserCache.this.maximumSize) {
+                    evictionCount.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的改写结果
+     *
+     * @param owner      插件实例
+     * @param sql        原始 sql
+     * @param contextKey 上下文 key
+     * @return 改写后的 sql, 未命中返回 null
+     */
+    public String get(Object owner, String sql, Object contextKey) {
+        String value;
+        synchronized (cache) {
+            value = cache.get(new Key(owner, sql, contextKey));
+        }
+        if (value == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 缓存改写结果
+     *
+     * @param owner      插件实例
+     * @param sql        原始 sql
+     * @param contextKey 上下文 key
+     * @param value      改写后的 sql
+     */
+    public void put(Object owner, String sql, Object contextKey, String value) {
+        synchronized (cache) {
+            cache.put(new Key(owner, sql, contextKey), value);
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return 当前统计快照
+     */
+    public Stats stats() {
+        return new Stats(hitCount.sum(), missCount.sum(), evictionCount.sum(), size());
+    }
+
+    /**
+     * 缓存统计
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final long hitCount;
+
+        private final long missCount;
+
+        private final long evictionCount;
+
+        private final int size;
+
+        public double hitRate() {
+            long total = hitCount + missCount;
+            return total == 0 ? 1.0 : (double) hitCount / total;
+        }
+    }
+
+    private static final class Key {
+
+        private final Object owner;
+        private final String sql;
+        private final Object contextKey;
+        private final int hash;
+
+        Key(Object owner, String sql, Object contextKey) {
+            this.owner = owner;
+            this.sql = sql;
+            this.contextKey = contextKey;
+            this.hash = (31 * System.identityHashCode(owner) + sql.hashCode()) * 31 + Objects.hashCode(contextKey);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return owner == key.owner && sql.equals(key.sql) && Objects.equals(contextKey, key.contextKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
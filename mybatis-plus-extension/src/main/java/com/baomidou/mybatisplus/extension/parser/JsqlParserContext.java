@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.parser;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.baomidou.mybatisplus.core.toolkit.StringPool;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import org.apache.ibatis.mapping.BoundSql;
+
+import java.util.List;
+
+/**
+ * 一次拦截链内共享的 JsqlParser 解析结果
+ * <p>
+ * 由 {@link com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor} 在执行 inner 插件链前开启,
+ * 同一个 {@link BoundSql} 的 sql 只解析一次, 各个 {@link JsqlParserSupport} 直接修改同一份 {@link Statement},
+ * 直到链结束(或者遇到不基于 JsqlParser 的插件)才调用 {@link #flush()} 回写 sql
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public final class JsqlParserContext {
+
+    private static final ThreadLocal<JsqlParserContext> HOLDER = new ThreadLocal<>();
+
+    /**
+     * 嵌套执行(例如分页插件内部的 count 查询)时外层的上下文
+     */
+    private final JsqlParserContext parent;
+    /**
+     * 当前解析结果所属的 BoundSql
+     */
+    private BoundSql boundSql;
+    /**
+     * 解析结果对应的 sql 文本(也就是 boundSql 当前的 sql)
+     */
+    private String sql;
+    private List<Statement> statements;
+    /**
+     * statements 是否已被修改但还未回写到 boundSql
+     */
+    private boolean dirty;
+
+    private JsqlParserContext(JsqlParserContext parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * 开启一个上下文并绑定到当前线程
+     *
+     * @return 上下文
+     */
+    public static JsqlParserContext open() {
+        JsqlParserContext context = new JsqlParserContext(HOLDER.get());
+        HOLDER.set(context);
+        return context;
+    }
+
+    /**
+     * @return 当前线程的上下文, 未开启时为 null
+     */
+    public static JsqlParserContext current() {
+        return HOLDER.get();
+    }
+
+    /**
+     * 获取 sql 对应的 {@link Statement}
+     * <p>
+     * 如果当前上下文持有与该 sql 一致且未被修改的解析结果, 则直接取走(调用方可随意修改), 否则重新解析
+     * </p>
+     *
+     * @param sql sql
+     * @return Statement
+     * @throws JSQLParserException 解析异常
+     */
+    public static Statement parse(String sql) throws JSQLParserException {
+        JsqlParserContext context = current();
+        if (context != null && !context.dirty && context.statements != null && context.statements.size() == 1
+            && sql.equals(context.sql)) {
+            Statement statement = context.statements.get(0);
+            context.reset();
+            return statement;
+        }
+        return CCJSqlParserUtil.parse(sql);
+    }
+
+    /**
+     * 关闭上下文, 回写未同步的 sql 并恢复外层上下文
+     */
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (parent == null) {
+                HOLDER.remove();
+            } else {
+                HOLDER.set(parent);
+            }
+        }
+    }
+
+    /**
+     * 把修改过的 statements 回写到 boundSql
+     */
+    public void flush() {
+        if (dirty && boundSql != null) {
+            String newSql = toSql(statements);
+            PluginUtils.mpBoundSql(boundSql).sql(newSql);
+            sql = newSql;
+        }
+        dirty = false;
+    }
+
+    /**
+     * 获取与 sql 对应的解析结果
+     * <p>
+     * 只比较 sql 文本时不返回已被修改的解析结果, 此时 sql 文本是修改前的, 与解析结果已经不一致
+     * </p>
+     *
+     * @param boundSql BoundSql, 为 null 时只比较 sql 文本
+     * @param sql      sql
+     * @return 解析结果, 没有则返回 null
+     */
+    List<Statement> statements(BoundSql boundSql, String sql) {
+        if (statements == null || (boundSql != null && boundSql != this.boundSql) || !sql.equals(this.sql)
+            || (boundSql == null && dirty)) {
+            return null;
+        }
+        return statements;
+    }
+
+    /**
+     * 绑定新的解析结果
+     */
+    void bind(BoundSql boundSql, String sql, List<Statement> statements) {
+        if (this.boundSql != boundSql) {
+            flush();
+        }
+        this.boundSql = boundSql;
+        this.sql = sql;
+        this.statements = statements;
+        this.dirty = false;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void markDirty() {
+        this.dirty = true;
+    }
+
+    private void reset() {
+        this.sql = null;
+        this.statements = null;
+        this.dirty = false;
+    }
+
+    static String toSql(List<Statement> statements) {
+        if (statements.size() == 1) {
+            return statements.get(0).toString();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < statements.size(); i++) {
+            if (i > 0) {
+                sb.append(StringPool.SEMICOLON);
+            }
+            sb.append(statements.get(i));
+        }
+        return sb.toString();
+    }
+}
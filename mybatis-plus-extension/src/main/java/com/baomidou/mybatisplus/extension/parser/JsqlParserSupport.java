@@ -16,17 +16,21 @@
 package com.baomidou.mybatisplus.extension.parser;
 
 import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
 import com.baomidou.mybatisplus.core.toolkit.StringPool;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
-import net.sf.jsqlparser.statement.Statements;
 import net.sf.jsqlparser.statement.delete.Delete;
 import net.sf.jsqlparser.statement.insert.Insert;
 import net.sf.jsqlparser.statement.select.Select;
 import net.sf.jsqlparser.statement.update.Update;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * https://github.com/JSQLParser/JSqlParser
@@ -41,35 +45,163 @@ public abstract class JsqlParserSupport {
      */
     protected final Log logger = LogFactory.getLog(this.getClass());
 
+    /**
+     * 改写结果缓存, 默认不开启
+     *
+     * @since 3.4.3
+     */
+    private JsqlParserCache sqlCache;
+
+    public JsqlParserCache getSqlCache() {
+        return sqlCache;
+    }
+
+    public void setSqlCache(JsqlParserCache sqlCache) {
+        this.sqlCache = sqlCache;
+    }
+
     public String parserSingle(String sql, Object obj) {
-        if (logger.isDebugEnabled()) {
-            logger.debug("original SQL: " + sql);
-        }
-        try {
-            Statement statement = CCJSqlParserUtil.parse(sql);
-            return processParser(statement, 0, sql, obj);
-        } catch (JSQLParserException e) {
-            throw ExceptionUtils.mpe("Failed to process, Error SQL: %s", e.getCause(), sql);
-        }
+        return parser(sql, obj, false);
     }
 
     public String parserMulti(String sql, Object obj) {
+        return parser(sql, obj, true);
+    }
+
+    private String parser(String sql, Object obj, boolean multi) {
         if (logger.isDebugEnabled()) {
             logger.debug("original SQL: " + sql);
         }
-        try {
+        JsqlParserContext context = supportParserContext() ? JsqlParserContext.current() : null;
+        List<Statement> statements = sharedStatements(context, null, sql, multi);
+        Object cacheKey = null;
+        // 共享的 Statement 已被前面的插件修改过时, sql 文本已经过期, 不能走缓存
+        if (sqlCache != null && (statements == null || !context.isDirty())) {
+            cacheKey = getSqlCacheKey(sql, obj);
+            if (cacheKey != null) {
+                String cached = sqlCache.get(this, sql, cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+        if (statements == null) {
+            statements = parse(sql, multi);
+        } else {
+            // 调用方拿到的是被修改过的 Statement, 此时以 Statement 为准
+            context.markDirty();
+        }
+        String result;
+        if (statements.size() == 1) {
+            result = processParser(statements.get(0), 0, sql, obj);
+        } else {
             // fixed github pull/295
             StringBuilder sb = new StringBuilder();
-            Statements statements = CCJSqlParserUtil.parseStatements(sql);
-            int i = 0;
-            for (Statement statement : statements.getStatements()) {
+            for (int i = 0; i < statements.size(); i++) {
                 if (i > 0) {
                     sb.append(StringPool.SEMICOLON);
                 }
-                sb.append(processParser(statement, i, sql, obj));
-                i++;
+                sb.append(processParser(statements.get(i), i, sql, obj));
             }
-            return sb.toString();
+            result = sb.toString();
+        }
+        if (cacheKey != null) {
+            sqlCache.put(this, sql, cacheKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * 改写结果缓存的上下文 key
+     * <p>
+     * 改写结果除了 sql 本身之外还依赖的状态(例如租户 id), 返回 null 表示不缓存
+     * </p>
+     *
+     * @param sql 原始 sql
+     * @param obj 透传参数
+     * @return 上下文 key
+     */
+    protected Object getSqlCacheKey(String sql, Object obj) {
+        return null;
+    }
+
+    /**
+     * 是否复用 {@link JsqlParserContext} 中的解析结果
+     *
+     * @return 默认 true
+     */
+    protected boolean supportParserContext() {
+        return true;
+    }
+
+    /**
+     * 处理 boundSql 中的单条 sql
+     * <p>
+     * 开启了 {@link JsqlParserContext} 时复用链上已解析的 Statement, 且不立即回写 sql,
+     * 否则等同于 {@link #parserSingle(String, Object)} 并回写
+     * </p>
+     *
+     * @param boundSql BoundSql
+     * @param obj      透传参数
+     */
+    public void processSingle(BoundSql boundSql, Object obj) {
+        process(boundSql, obj, false);
+    }
+
+    /**
+     * 处理 boundSql 中的多条 sql
+     *
+     * @param boundSql BoundSql
+     * @param obj      透传参数
+     * @see #processSingle(BoundSql, Object)
+     */
+    public void processMulti(BoundSql boundSql, Object obj) {
+        process(boundSql, obj, true);
+    }
+
+    private void process(BoundSql boundSql, Object obj, boolean multi) {
+        JsqlParserContext context = JsqlParserContext.current();
+        if (context != null && (sqlCache != null || !supportParserContext())) {
+            // 缓存以 sql 文本为 key, 先回写前面插件的修改
+            context.flush();
+        }
+        final String sql = boundSql.getSql();
+        if (context == null || !supportParserContext() || (sqlCache != null && getSqlCacheKey(sql, obj) != null)) {
+            PluginUtils.mpBoundSql(boundSql).sql(parser(sql, obj, multi));
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("original SQL: " + sql);
+        }
+        List<Statement> statements = sharedStatements(context, boundSql, sql, multi);
+        if (statements == null) {
+            statements = parse(sql, multi);
+            context.bind(boundSql, sql, statements);
+        }
+        for (int i = 0; i < statements.size(); i++) {
+            processStatement(statements.get(i), i, sql, obj);
+        }
+        context.markDirty();
+    }
+
+    /**
+     * 从 {@link JsqlParserContext} 获取已解析的 sql
+     */
+    private List<Statement> sharedStatements(JsqlParserContext context, BoundSql boundSql, String sql, boolean multi) {
+        if (context == null) {
+            return null;
+        }
+        List<Statement> statements = context.statements(boundSql, sql);
+        if (statements != null && !multi && statements.size() != 1) {
+            return null;
+        }
+        return statements;
+    }
+
+    private List<Statement> parse(String sql, boolean multi) {
+        try {
+            return multi ? CCJSqlParserUtil.parseStatements(sql).getStatements()
+                : Collections.singletonList(CCJSqlParserUtil.parse(sql));
         } catch (JSQLParserException e) {
             throw ExceptionUtils.mpe("Failed to process, Error SQL: %s", e.getCause(), sql);
         }
@@ -85,6 +217,20 @@ public abstract class JsqlParserSupport {
         if (logger.isDebugEnabled()) {
             logger.debug("SQL to parse, SQL: " + sql);
         }
+        processStatement(statement, index, sql, obj);
+        sql = statement.toString();
+        if (logger.isDebugEnabled()) {
+            logger.debug("parse the finished SQL: " + sql);
+        }
+        return sql;
+    }
+
+    /**
+     * 按 Statement 类型分发处理
+     *
+     * @param statement JsqlParser Statement
+     */
+    protected void processStatement(Statement statement, int index, String sql, Object obj) {
         if (statement instanceof Insert) {
             this.processInsert((Insert) statement, index, sql, obj);
         } else if (statement instanceof Select) {
@@ -94,11 +240,6 @@ public abstract class JsqlParserSupport {
         } else if (statement instanceof Delete) {
             this.processDelete((Delete) statement, index, sql, obj);
         }
-        sql = statement.toString();
-        if (logger.isDebugEnabled()) {
-            logger.debug("parse the finished SQL: " + sql);
-        }
-        return sql;
     }
 
     /**
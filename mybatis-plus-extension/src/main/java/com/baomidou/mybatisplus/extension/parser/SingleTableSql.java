@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.parser;
+
+import lombok.Getter;
+import org.apache.ibatis.mapping.SqlCommandType;
+
+/**
+ * 单表 sql 的轻量解析
+ * <p>
+ * 只识别单表且没有子查询的 select / update / delete, 例如 BaseMapper 注入方法生成的 sql:
+ * <ul>
+ *     <li>SELECT ... FROM table [[AS] alias] [WHERE ...] [GROUP BY|HAVING|ORDER BY|LIMIT|OFFSET|FETCH|FOR ...]</li>
+ *     <li>UPDATE table [[AS] alias] SET ... [WHERE ...] [ORDER BY|LIMIT ...]</li>
+ *     <li>DELETE FROM table [[AS] alias] [WHERE ...] [ORDER BY|LIMIT ...]</li>
+ * </ul>
+ * 遇到 join、子查询、union、with、注释、多条语句等无法确定结构的情况直接返回 null, 交给 JsqlParser 处理
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+@Getter
+public final class SingleTableSql {
+
+    private static final int EOF = 0;
+    private static final int WORD = 1;
+    private static final int QUOTED = 2;
+    private static final int LITERAL = 3;
+    private static final int SYMBOL = 4;
+    private static final int REJECT = 5;
+
+    /**
+     * 出现即放弃的关键字
+     * <p>
+     * 包括各数据库 where 之后的非标准子句(例如 mysql 的 LOCK IN SHARE MODE, sqlserver 的 OPTION (...)),
+     * 否则这些子句会被当成 where 条件的一部分, 租户条件追加在它们后面
+     * </p>
+     */
+    private static final String[] REJECT_WORDS = {
+        "SELECT", "JOIN", "STRAIGHT_JOIN", "UNION", "INTERSECT", "EXCEPT", "MINUS", "WITH", "LATERAL", "INTO",
+        "XOR", "RETURNING", "USING", "OUTPUT", "CONNECT", "PIVOT", "UNPIVOT", "APPLY", "QUALIFY", "WINDOW",
+        "LOCK", "OPTION", "OPTIMIZE", "PROCEDURE", "SETTINGS", "PREWHERE", "FINAL"};
+    /**
+     * 不能作为表名或别名的关键字
+     */
+    private static final String[] KEYWORDS = {
+        "WHERE", "GROUP", "HAVING", "ORDER", "LIMIT", "OFFSET", "FETCH", "FOR", "SET", "FROM", "AS", "ON", "AND",
+        "OR", "NOT", "INNER", "LEFT", "RIGHT", "FULL", "CROSS", "NATURAL", "OUTER", "USE", "FORCE", "IGNORE",
+        "PARTITION", "TABLESAMPLE", "LOCK", "LOW_PRIORITY", "QUICK", "ONLY", "TOP", "DISTINCT"};
+    private static final String[] SELECT_TAILS = {"GROUP", "HAVING", "ORDER", "LIMIT", "OFFSET", "FETCH", "FOR"};
+    private static final String[] MODIFY_TAILS = {"ORDER", "LIMIT"};
+
+    private final SqlCommandType sqlCommandType;
+    /**
+     * 表名(不含 schema, 保留引号, 与 {@link net.sf.jsqlparser.schema.Table#getName()} 一致)
+     */
+    private final String tableName;
+    /**
+     * 表别名, 没有时为 null
+     */
+    private final String alias;
+    /**
+     * where 条件的起止下标 [whereStart, whereEnd), 没有 where 时为 -1
+     */
+    private final int whereStart;
+    private final int whereEnd;
+    /**
+     * where 条件最外层是否有 or
+     */
+    private final boolean orWhere;
+    /**
+     * 没有 where 时追加 where 的位置
+     */
+    private final int insertIndex;
+
+    private SingleTableSql(SqlCommandType sqlCommandType, String tableName, String alias, int whereStart, int whereEnd,
+                           boolean orWhere, int insertIndex) {
+        this.sqlCommandType = sqlCommandType;
+        this.tableName = tableName;
+        this.alias = alias;
+        this.whereStart = whereStart;
+        this.whereEnd = whereEnd;
+        this.orWhere = orWhere;
+        this.insertIndex = insertIndex;
+    }
+
+    public boolean hasWhere() {
+        return whereStart >= 0;
+    }
+
+    /**
+     * 解析 sql
+     *
+     * @param sql sql
+     * @return 不是简单单表 sql 时返回 null
+     */
+    public static SingleTableSql parse(String sql) {
+        return new Scanner(sql).parse();
+    }
+
+    private static final class Scanner {
+
+        private final String sql;
+        private int pos;
+        private int depth;
+        private boolean started;
+        private int kind;
+        private char symbol;
+        private int start;
+        private int end;
+        /**
+         * 上一个 token 的结束下标
+         */
+        private int prevEnd;
+
+        private String tableName;
+        private String alias;
+        private int whereStart = -1;
+        private int whereEnd = -1;
+        private boolean orWhere;
+
+        Scanner(String sql) {
+            this.sql = sql;
+        }
+
+        SingleTableSql parse() {
+            next();
+            if (isWord("SELECT")) {
+                return parseSelect();
+            }
+            if (isWord("UPDATE")) {
+                return parseUpdate();
+            }
+            if (isWord("DELETE")) {
+                return parseDelete();
+            }
+            return null;
+        }
+
+        private SingleTableSql parseSelect() {
+            boolean items = false;
+            while (next() != EOF) {
+                if (kind == REJECT) {
+                    return null;
+                }
+                if (depth == 0 && isWord("FROM")) {
+                    break;
+                }
+                items = true;
+            }
+            if (!items || kind == EOF) {
+                return null;
+            }
+            next();
+            if (!parseTable()) {
+                return null;
+            }
+            return parseWhere(SqlCommandType.SELECT, SELECT_TAILS);
+        }
+
+        private SingleTableSql parseUpdate() {
+            next();
+            if (!parseTable() || !isWord("SET")) {
+                return null;
+            }
+            boolean assignments = false;
+            while (next() != EOF) {
+                if (kind == REJECT || isWord("FROM")) {
+                    return null;
+                }
+                if (depth == 0 && (isWord("WHERE") || isTail(MODIFY_TAILS))) {
+                    break;
+                }
+                assignments = true;
+            }
+            if (!assignments) {
+                return null;
+            }
+            return parseWhere(SqlCommandType.UPDATE, MODIFY_TAILS);
+        }
+
+        private SingleTableSql parseDelete() {
+            next();
+            if (!isWord("FROM")) {
+                return null;
+            }
+            next();
+            if (!parseTable()) {
+                return null;
+            }
+            return parseWhere(SqlCommandType.DELETE, MODIFY_TAILS);
+        }
+
+        /**
+         * 解析表名及别名, 当前 token 为表名的第一个 token, 结束后当前 token 为表名(别名)之后的 token
+         */
+        private boolean parseTable() {
+            if (!isName()) {
+                return false;
+            }
+            int nameStart = start;
+            int nameEnd = end;
+            next();
+            while (kind == SYMBOL && symbol == '.') {
+                next();
+                if (!isName()) {
+                    return false;
+                }
+                nameStart = start;
+                nameEnd = end;
+                next();
+            }
+            tableName = sql.substring(nameStart, nameEnd);
+            if (isWord("AS")) {
+                next();
+                if (!isName()) {
+                    return false;
+                }
+                alias = sql.substring(start, end);
+                next();
+            } else if (isName()) {
+                alias = sql.substring(start, end);
+                next();
+            }
+            return kind != REJECT && depth == 0;
+        }
+
+        /**
+         * 当前 token 为表(或 set 子句)之后的 token
+         */
+        private SingleTableSql parseWhere(SqlCommandType sqlCommandType, String[] tails) {
+            int insertIndex = prevEnd;
+            if (isWord("WHERE")) {
+                if (next() == EOF) {
+                    return null;
+                }
+                whereStart = start;
+                do {
+                    if (kind == REJECT) {
+                        return null;
+                    }
+                    if (depth == 0 && kind == WORD) {
+                        if (isTail(tails)) {
+                            break;
+                        }
+                        if (isWord("OR")) {
+                            orWhere = true;
+                        } else if (isWord("WHERE")) {
+                            return null;
+                        }
+                    }
+                } while (next() != EOF);
+                whereEnd = prevEnd;
+                if (whereEnd <= whereStart) {
+                    return null;
+                }
+            } else if (kind != EOF && !isTail(tails)) {
+                return null;
+            }
+            // 剩余部分只需保证没有需要放弃的关键字
+            while (kind != EOF) {
+                if (kind == REJECT) {
+                    return null;
+                }
+                next();
+            }
+            if (depth != 0) {
+                return null;
+            }
+            return new SingleTableSql(sqlCommandType, tableName, alias, whereStart, whereEnd, orWhere, insertIndex);
+        }
+
+        private boolean isName() {
+            return kind == QUOTED || (kind == WORD && !isAnyWord(KEYWORDS));
+        }
+
+        private boolean isTail(String[] tails) {
+            return depth == 0 && isAnyWord(tails);
+        }
+
+        private boolean isAnyWord(String[] words) {
+            if (kind != WORD) {
+                return false;
+            }
+            for (String word : words) {
+                if (isWord(word)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isWord(String word) {
+            return kind == WORD && end - start == word.length() && sql.regionMatches(true, start, word, 0, word.length());
+        }
+
+        private int next() {
+            if (kind == REJECT) {
+                return REJECT;
+            }
+            prevEnd = end;
+            final int length = sql.length();
+            while (pos < length && Character.isWhitespace(sql.charAt(pos))) {
+                pos++;
+            }
+            start = pos;
+            if (pos >= length) {
+                end = pos;
+                return kind = EOF;
+            }
+            char c = sql.charAt(pos);
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                while (pos < length && (Character.isLetterOrDigit(sql.charAt(pos)) || sql.charAt(pos) == '_')) {
+                    pos++;
+                }
+                end = pos;
+                kind = WORD;
+                if (started && isAnyWord(REJECT_WORDS)) {
+                    kind = REJECT;
+                }
+                started = true;
+                return kind;
+            }
+            started = true;
+            if (c == '\'') {
+                pos++;
+                while (true) {
+                    if (pos >= length) {
+                        return kind = REJECT;
+                    }
+                    char d = sql.charAt(pos++);
+                    if (d == '\\') {
+                        return kind = REJECT;
+                    }
+                    if (d == '\'') {
+                        if (pos < length && sql.charAt(pos) == '\'') {
+                            pos++;
+                            continue;
+                        }
+                        break;
+                    }
+                }
+                end = pos;
+                return kind = LITERAL;
+            }
+            if (c == '"' || c == '`') {
+                int close = sql.indexOf(c, pos + 1);
+                if (close < 0) {
+                    return kind = REJECT;
+                }
+                pos = close + 1;
+                end = pos;
+                return kind = QUOTED;
+            }
+            char n = pos + 1 < length ? sql.charAt(pos + 1) : 0;
+            if ((c == '-' && n == '-') || (c == '/' && n == '*') || (c == '|' && n == '|') || (c == '&' && n == '&')
+                || c == '#' || c == ';' || c == '{' || c == '}' || c == '[' || c == ']' || c == '$') {
+                return kind = REJECT;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (--depth < 0) {
+                    return kind = REJECT;
+                }
+            }
+            pos++;
+            end = pos;
+            symbol = c;
+            return kind = SYMBOL;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.plugins;
+
+import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 预先筛选好的 inner 插件执行计划
+ * <p>
+ * 只保留重写了对应阶段方法, 并且对该 MappedStatement 生效的插件
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+final class InnerInterceptorPlan {
+
+    static final InnerInterceptor[] EMPTY = new InnerInterceptor[0];
+
+    /**
+     * willDoQuery / beforeQuery / afterQuery
+     */
+    final InnerInterceptor[] query;
+    /**
+     * willDoUpdate / beforeUpdate
+     */
+    final InnerInterceptor[] update;
+    /**
+     * beforePrepare
+     */
+    final InnerInterceptor[] prepare;
+    /**
+     * beforeGetBoundSql
+     */
+    final InnerInterceptor[] getBoundSql;
+    /**
+     * afterCompletion, 与 MappedStatement 无关
+     */
+    final InnerInterceptor[] completion;
+    /**
+     * 按 MappedStatement 筛选后的执行计划, 与本计划一起替换, 不会缓存过期的计划
+     */
+    private final Map<String, InnerInterceptorPlan> statementPlans = new ConcurrentHashMap<>();
+
+    InnerInterceptorPlan(InnerInterceptor[] query, InnerInterceptor[] update, InnerInterceptor[] prepare, InnerInterceptor[] getBoundSql,
+                         InnerInterceptor[] completion) {
+        this.query = query;
+        this.update = update;
+        this.prepare = prepare;
+        this.getBoundSql = getBoundSql;
+        this.completion = completion;
+    }
+
+    /**
+     * 不区分 MappedStatement 的执行计划, 只按是否重写了对应方法筛选
+     */
+    static InnerInterceptorPlan of(List<InnerInterceptor> interceptors) {
+        return new InnerInterceptorPlan(
+            filter(interceptors, InnerInterceptorPlan::overrideQuery),
+            filter(interceptors, InnerInterceptorPlan::overrideUpdate),
+            filter(interceptors, InnerInterceptorPlan::overridePrepare),
+            filter(interceptors, InnerInterceptorPlan::overrideGetBoundSql),
+            filter(interceptors, InnerInterceptorPlan::overrideCompletion));
+    }
+
+    /**
+     * 针对 MappedStatement 的执行计划, 按 MappedStatement id 缓存
+     */
+    InnerInterceptorPlan plan(MappedStatement ms) {
+        return CollectionUtils.computeIfAbsent(statementPlans, ms.getId(), k -> of(ms));
+    }
+
+    /**
+     * 针对 MappedStatement 的执行计划
+     */
+    InnerInterceptorPlan of(MappedStatement ms) {
+        return new InnerInterceptorPlan(
+            filter(query, i -> i.willInterceptExecutor(ms)),
+            filter(update, i -> i.willInterceptExecutor(ms)),
+            filter(prepare, i -> i.willInterceptStatementHandler(ms)),
+            filter(getBoundSql, i -> i.willInterceptStatementHandler(ms)),
+            completion);
+    }
+
+    private static InnerInterceptor[] filter(InnerInterceptor[] interceptors, Predicate<InnerInterceptor> predicate) {
+        List<InnerInterceptor> list = new ArrayList<>(interceptors.length);
+        for (InnerInterceptor interceptor : interceptors) {
+            if (predicate.test(interceptor)) {
+                list.add(interceptor);
+            }
+        }
+        return list.isEmpty() ? EMPTY : list.toArray(EMPTY);
+    }
+
+    private static InnerInterceptor[] filter(List<InnerInterceptor> interceptors, Predicate<InnerInterceptor> predicate) {
+        return filter(interceptors.toArray(EMPTY), predicate);
+    }
+
+    private static boolean overrideQuery(InnerInterceptor interceptor) {
+        return override(interceptor, "willDoQuery", Executor.class, MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, BoundSql.class)
+            || override(interceptor, "beforeQuery", Executor.class, MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, BoundSql.class)
+            || override(interceptor, "afterQuery", Executor.class, MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, BoundSql.class, List.class)
+            || override(interceptor, "afterQueryCompletion", Executor.class, MappedStatement.class, Object.class, BoundSql.class);
+    }
+
+    private static boolean overrideUpdate(InnerInterceptor interceptor) {
+        return override(interceptor, "willDoUpdate", Executor.class, MappedStatement.class, Object.class)
+            || override(interceptor, "beforeUpdate", Executor.class, MappedStatement.class, Object.class);
+    }
+
+    private static boolean overridePrepare(InnerInterceptor interceptor) {
+        return override(interceptor, "beforePrepare", StatementHandler.class, Connection.class, Integer.class);
+    }
+
+    private static boolean overrideGetBoundSql(InnerInterceptor interceptor) {
+        return override(interceptor, "beforeGetBoundSql", StatementHandler.class);
+    }
+
+    private static boolean overrideCompletion(InnerInterceptor interceptor) {
+        return override(interceptor, "afterCompletion", Transaction.class);
+    }
+
+    private static boolean override(InnerInterceptor interceptor, String name, Class<?>... parameterTypes) {
+        try {
+            return interceptor.getClass().getMethod(name, parameterTypes).getDeclaringClass() != InnerInterceptor.class;
+        } catch (NoSuchMethodException e) {
+            throw ExceptionUtils.mpe(e);
+        }
+    }
+}
@@ -16,9 +16,15 @@
 package com.baomidou.mybatisplus.extension.plugins;
 
 import com.baomidou.mybatisplus.core.toolkit.ClassUtils;
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
 import com.baomidou.mybatisplus.core.toolkit.StringPool;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserContext;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserSupport;
 import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.metrics.InnerInterceptorRecorder;
+import com.baomidou.mybatisplus.extension.plugins.metrics.InnerInterceptorRecorder.Phase;
 import com.baomidou.mybatisplus.extension.toolkit.PropertyMapper;
+import lombok.Getter;
 import lombok.Setter;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.executor.Executor;
@@ -29,6 +35,7 @@ import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.plugin.*;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
 
 import java.sql.Connection;
 import java.util.*;
@@ -45,19 +52,48 @@ import java.util.*;
         @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
         @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
         @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "commit", args = {boolean.class}),
+        @Signature(type = Executor.class, method = "rollback", args = {boolean.class}),
+        @Signature(type = Executor.class, method = "close", args = {boolean.class}),
     }
 )
 public class MybatisPlusInterceptor implements Interceptor {
 
-    @Setter
     private List<InnerInterceptor> interceptors = new ArrayList<>();
+    /**
+     * 按是否重写了对应方法筛选后的插件, interceptors 变更时整体替换(包括其中按 MappedStatement 缓存的计划)
+     */
+    private volatile InnerInterceptorPlan plan = InnerInterceptorPlan.of(Collections.emptyList());
+    /**
+     * 同一条 sql 在 inner 插件链中只解析一次
+     * <p>
+     * 开启后基于 {@link JsqlParserSupport} 的插件共享同一份 {@link JsqlParserContext}, 链结束后才回写 sql
+     *
+     * @since 3.4.3
+     */
+    @Getter
+    @Setter
+    private boolean shareParsedSql;
+    /**
+     * inner 插件耗时记录器, 为 null 时不记录
+     *
+     * @since 3.4.3
+     */
+    @Getter
+    @Setter
+    private InnerInterceptorRecorder recorder;
 
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
         Object target = invocation.getTarget();
         Object[] args = invocation.getArgs();
+        final InnerInterceptorRecorder recorder = this.recorder;
         if (target instanceof Executor) {
             final Executor executor = (Executor) target;
+            if (args.length == 1) {
+                // commit / rollback / close
+                return complete(invocation, executor);
+            }
             Object parameter = args[1];
             boolean isUpdate = args.length == 2;
             MappedStatement ms = (MappedStatement) args[0];
@@ -71,41 +107,139 @@ public class MybatisPlusInterceptor implements Interceptor {
                     // 几乎不可能走进这里面,除非使用Executor的代理对象调用query[args[6]]
                     boundSql = (BoundSql) args[5];
                 }
-                for (InnerInterceptor query : interceptors) {
-                    if (!query.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql)) {
-                        return Collections.emptyList();
+                InnerInterceptor[] queries = plan(ms).query;
+                try {
+                    JsqlParserContext context = openParserContext();
+                    try {
+                        for (InnerInterceptor query : queries) {
+                            syncParserContext(context, query);
+                            long start = startTime(recorder);
+                            boolean willDoQuery = query.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+                            record(recorder, query, ms, Phase.WILL_DO_QUERY, start);
+                            if (!willDoQuery) {
+                                return Collections.emptyList();
+                            }
+                            start = startTime(recorder);
+                            query.beforeQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+                            record(recorder, query, ms, Phase.BEFORE_QUERY, start);
+                        }
+                    } finally {
+                        closeParserContext(context);
+                    }
+                    CacheKey cacheKey = executor.createCacheKey(ms, parameter, rowBounds, boundSql);
+                    List<?> result = executor.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+                    for (InnerInterceptor query : queries) {
+                        long start = startTime(recorder);
+                        result = query.afterQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql, result);
+                        record(recorder, query, ms, Phase.AFTER_QUERY, start);
+                    }
+                    return result;
+                } finally {
+                    for (InnerInterceptor query : queries) {
+                        query.afterQueryCompletion(executor, ms, parameter, boundSql);
                     }
-                    query.beforeQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
                 }
-                CacheKey cacheKey = executor.createCacheKey(ms, parameter, rowBounds, boundSql);
-                return executor.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
             } else if (isUpdate) {
-                for (InnerInterceptor update : interceptors) {
-                    if (!update.willDoUpdate(executor, ms, parameter)) {
+                for (InnerInterceptor update : plan(ms).update) {
+                    long start = startTime(recorder);
+                    boolean willDoUpdate = update.willDoUpdate(executor, ms, parameter);
+                    record(recorder, update, ms, Phase.WILL_DO_UPDATE, start);
+                    if (!willDoUpdate) {
                         return -1;
                     }
+                    start = startTime(recorder);
                     update.beforeUpdate(executor, ms, parameter);
+                    record(recorder, update, ms, Phase.BEFORE_UPDATE, start);
                 }
             }
         } else {
             // StatementHandler
             final StatementHandler sh = (StatementHandler) target;
             // 目前只有StatementHandler.getBoundSql方法args才为null
-            if (null == args) {
-                for (InnerInterceptor innerInterceptor : interceptors) {
-                    innerInterceptor.beforeGetBoundSql(sh);
-                }
-            } else {
-                Connection connections = (Connection) args[0];
-                Integer transactionTimeout = (Integer) args[1];
-                for (InnerInterceptor innerInterceptor : interceptors) {
-                    innerInterceptor.beforePrepare(sh, connections, transactionTimeout);
+            InnerInterceptor[] candidates = null == args ? plan.getBoundSql : plan.prepare;
+            if (candidates.length == 0) {
+                return invocation.proceed();
+            }
+            MappedStatement ms = PluginUtils.mpStatementHandler(sh).mappedStatement();
+            InnerInterceptorPlan msPlan = plan(ms);
+            JsqlParserContext context = openParserContext();
+            try {
+                if (null == args) {
+                    for (InnerInterceptor innerInterceptor : msPlan.getBoundSql) {
+                        syncParserContext(context, innerInterceptor);
+                        long start = startTime(recorder);
+                        innerInterceptor.beforeGetBoundSql(sh);
+                        record(recorder, innerInterceptor, ms, Phase.BEFORE_GET_BOUND_SQL, start);
+                    }
+                } else {
+                    Connection connections = (Connection) args[0];
+                    Integer transactionTimeout = (Integer) args[1];
+                    for (InnerInterceptor innerInterceptor : msPlan.prepare) {
+                        syncParserContext(context, innerInterceptor);
+                        long start = startTime(recorder);
+                        innerInterceptor.beforePrepare(sh, connections, transactionTimeout);
+                        record(recorder, innerInterceptor, ms, Phase.BEFORE_PREPARE, start);
+                    }
                 }
+            } finally {
+                closeParserContext(context);
             }
         }
         return invocation.proceed();
     }
 
+    private Object complete(Invocation invocation, Executor executor) throws Throwable {
+        InnerInterceptor[] completions = plan.completion;
+        if (completions.length == 0 || executor.isClosed()) {
+            return invocation.proceed();
+        }
+        // close 之后无法再获取
+        Transaction transaction = executor.getTransaction();
+        try {
+            return invocation.proceed();
+        } finally {
+            for (InnerInterceptor completion : completions) {
+                completion.afterCompletion(transaction);
+            }
+        }
+    }
+
+    /**
+     * 获取 MappedStatement 对应的执行计划
+     */
+    private InnerInterceptorPlan plan(MappedStatement ms) {
+        return plan.plan(ms);
+    }
+
+    private long startTime(InnerInterceptorRecorder recorder) {
+        return recorder == null ? 0L : System.nanoTime();
+    }
+
+    private void record(InnerInterceptorRecorder recorder, InnerInterceptor interceptor, MappedStatement ms, Phase phase, long start) {
+        if (recorder != null) {
+            recorder.record(interceptor, ms.getId(), phase, System.nanoTime() - start);
+        }
+    }
+
+    private JsqlParserContext openParserContext() {
+        return shareParsedSql ? JsqlParserContext.open() : null;
+    }
+
+    /**
+     * 非 {@link JsqlParserSupport} 的插件直接读写 sql 文本, 执行前先回写共享的解析结果
+     */
+    private void syncParserContext(JsqlParserContext context, InnerInterceptor innerInterceptor) {
+        if (context != null && !(innerInterceptor instanceof JsqlParserSupport)) {
+            context.flush();
+        }
+    }
+
+    private void closeParserContext(JsqlParserContext context) {
+        if (context != null) {
+            context.close();
+        }
+    }
+
     @Override
     public Object plugin(Object target) {
         if (target instanceof Executor || target instanceof StatementHandler) {
@@ -114,8 +248,21 @@ public class MybatisPlusInterceptor implements Interceptor {
         return target;
     }
 
-    public void addInnerInterceptor(InnerInterceptor innerInterceptor) {
+    public synchronized void addInnerInterceptor(InnerInterceptor innerInterceptor) {
         this.interceptors.add(innerInterceptor);
+        this.refreshPlan();
+    }
+
+    /**
+     * 复制一份, 之后对传入的 list 的修改不生效
+     */
+    public synchronized void setInterceptors(List<InnerInterceptor> interceptors) {
+        this.interceptors = new ArrayList<>(interceptors);
+        this.refreshPlan();
+    }
+
+    private void refreshPlan() {
+        this.plan = InnerInterceptorPlan.of(interceptors);
     }
 
     public List<InnerInterceptor> getInterceptors() {
@@ -137,6 +284,8 @@ public class MybatisPlusInterceptor implements Interceptor {
     @Override
     public void setProperties(Properties properties) {
         PropertyMapper pm = PropertyMapper.newInstance(properties);
+        pm.whenNotBlack("shareParsedSql", Boolean::parseBoolean, this::setShareParsedSql);
+        pm.whenNotBlack("recorder", ClassUtils::newInstance, this::setRecorder);
         Map<String, Properties> group = pm.group(StringPool.AT);
         group.forEach((k, v) -> {
             InnerInterceptor innerInterceptor = ClassUtils.newInstance(k);
@@ -33,4 +33,18 @@ public interface DataPermissionHandler {
      * @return JSqlParser 条件表达式
      */
     Expression getSqlSegment(Expression where, String mappedStatementId);
+
+    /**
+     * 改写结果缓存的上下文 key
+     * <p>
+     * 权限片段除 sql 与 mappedStatementId 外依赖的状态(例如当前用户的角色), 默认返回 null 不缓存
+     *
+     * @param mappedStatementId Mybatis MappedStatement Id
+     * @return 上下文 key
+     * @see com.baomidou.mybatisplus.extension.parser.JsqlParserCache
+     * @since 3.4.3
+     */
+    default Object getCacheKey(String mappedStatementId) {
+        return null;
+    }
 }
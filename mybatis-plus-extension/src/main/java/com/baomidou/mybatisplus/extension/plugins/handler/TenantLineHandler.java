@@ -15,7 +15,12 @@
  */
 package com.baomidou.mybatisplus.extension.plugins.handler;
 
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import net.sf.jsqlparser.expression.DoubleValue;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.StringValue;
 
 /**
  * 租户处理器（ TenantId 行级 ）
@@ -33,6 +38,28 @@ public interface TenantLineHandler {
      */
     Expression getTenantId();
 
+    /**
+     * 获取租户 ID 值, 仅在租户 ID 以参数绑定时使用
+     * <p>
+     * 默认从 {@link #getTenantId()} 的字面量中取值
+     *
+     * @return 租户 ID 值
+     * @since 3.4.3
+     */
+    default Object getTenantIdValue() {
+        Expression tenantId = getTenantId();
+        if (tenantId instanceof LongValue) {
+            return ((LongValue) tenantId).getValue();
+        } else if (tenantId instanceof StringValue) {
+            return ((StringValue) tenantId).getValue();
+        } else if (tenantId instanceof DoubleValue) {
+            return ((DoubleValue) tenantId).getValue();
+        } else if (tenantId == null || tenantId instanceof NullValue) {
+            return null;
+        }
+        throw ExceptionUtils.mpe("can not get the value of tenantId expression: %s, please override getTenantIdValue", tenantId);
+    }
+
     /**
      * 获取租户字段名
      * <p>
@@ -55,4 +82,19 @@ public interface TenantLineHandler {
     default boolean ignoreTable(String tableName) {
         return false;
     }
+
+    /**
+     * 改写结果缓存的上下文 key
+     * <p>
+     * 默认以租户 ID 值区分, 如果 {@link #ignoreTable(String)} 等逻辑还依赖其它运行时状态需要一并返回,
+     * 返回 null 表示不缓存
+     *
+     * @return 上下文 key
+     * @see com.baomidou.mybatisplus.extension.parser.JsqlParserCache
+     * @since 3.4.3
+     */
+    default Object getCacheKey() {
+        Expression tenantId = getTenantId();
+        return tenantId == null ? null : tenantId.toString();
+    }
 }
@@ -46,6 +46,13 @@ import java.sql.Connection;
  */
 public class BlockAttackInnerInterceptor extends JsqlParserSupport implements InnerInterceptor {
 
+    @Override
+    public boolean willInterceptStatementHandler(MappedStatement ms) {
+        SqlCommandType sct = ms.getSqlCommandType();
+        return (sct == SqlCommandType.UPDATE || sct == SqlCommandType.DELETE)
+            && !InterceptorIgnoreHelper.willIgnoreBlockAttack(ms.getId());
+    }
+
     @Override
     public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
         PluginUtils.MPStatementHandler handler = PluginUtils.mpStatementHandler(sh);
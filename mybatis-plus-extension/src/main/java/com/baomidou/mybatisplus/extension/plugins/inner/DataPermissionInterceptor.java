@@ -16,7 +16,6 @@
 package com.baomidou.mybatisplus.extension.plugins.inner;
 
 import com.baomidou.mybatisplus.core.plugins.InterceptorIgnoreHelper;
-import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
 import com.baomidou.mybatisplus.extension.parser.JsqlParserSupport;
 import com.baomidou.mybatisplus.extension.plugins.handler.DataPermissionHandler;
 import lombok.*;
@@ -32,6 +31,7 @@ import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -49,11 +49,15 @@ import java.util.List;
 public class DataPermissionInterceptor extends JsqlParserSupport implements InnerInterceptor {
     private DataPermissionHandler dataPermissionHandler;
 
+    @Override
+    public boolean willInterceptExecutor(MappedStatement ms) {
+        return !InterceptorIgnoreHelper.willIgnoreDataPermission(ms.getId());
+    }
+
     @Override
     public void beforeQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
         if (InterceptorIgnoreHelper.willIgnoreDataPermission(ms.getId())) return;
-        PluginUtils.MPBoundSql mpBs = PluginUtils.mpBoundSql(boundSql);
-        mpBs.sql(parserSingle(mpBs.sql(), ms.getId()));
+        processSingle(boundSql, ms.getId());
     }
 
     @Override
@@ -68,6 +72,12 @@ public class DataPermissionInterceptor extends JsqlParserSupport implements Inne
         }
     }
 
+    @Override
+    protected Object getSqlCacheKey(String sql, Object obj) {
+        Object key = dataPermissionHandler.getCacheKey((String) obj);
+        return key == null ? null : Arrays.asList(obj, key);
+    }
+
     /**
      * 设置 where 条件
      *
@@ -19,9 +19,7 @@ import com.baomidou.mybatisplus.core.plugins.InterceptorIgnoreHelper;
 import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
 import com.baomidou.mybatisplus.core.toolkit.TableNameParser;
 import com.baomidou.mybatisplus.extension.plugins.handler.TableNameHandler;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.*;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
@@ -32,9 +30,9 @@ import org.apache.ibatis.session.RowBounds;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * 动态表名
@@ -44,11 +42,43 @@ import java.util.Map;
  */
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 @SuppressWarnings({"rawtypes"})
 public class DynamicTableNameInnerInterceptor implements InnerInterceptor {
 
     private Map<String, TableNameHandler> tableNameHandlerMap;
+    /**
+     * 按 sql 缓存表名位置的最大条数, 小于等于 0 时不缓存
+     *
+     * @since 3.4.3
+     */
+    private int tableNameCacheSize = 1024;
+    /**
+     * 读取无锁, 超出容量时按写入顺序淘汰
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final Map<String, List<TableNameParser.SqlToken>> tableNameCache = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final Queue<String> tableNameCacheOrder = new ConcurrentLinkedQueue<>();
+
+    public DynamicTableNameInnerInterceptor(Map<String, TableNameHandler> tableNameHandlerMap) {
+        this.tableNameHandlerMap = tableNameHandlerMap;
+    }
+
+    @Override
+    public boolean willInterceptExecutor(MappedStatement ms) {
+        return !InterceptorIgnoreHelper.willIgnoreDynamicTableName(ms.getId());
+    }
+
+    @Override
+    public boolean willInterceptStatementHandler(MappedStatement ms) {
+        SqlCommandType sct = ms.getSqlCommandType();
+        return (sct == SqlCommandType.INSERT || sct == SqlCommandType.UPDATE || sct == SqlCommandType.DELETE)
+            && !InterceptorIgnoreHelper.willIgnoreDynamicTableName(ms.getId());
+    }
 
     @Override
     public void beforeQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
@@ -70,10 +100,8 @@ public class DynamicTableNameInnerInterceptor implements InnerInterceptor {
     }
 
     protected String changeTable(String sql) {
-        TableNameParser parser = new TableNameParser(sql);
-        List<TableNameParser.SqlToken> names = new ArrayList<>();
-        parser.accept(names::add);
-        StringBuilder builder = new StringBuilder();
+        List<TableNameParser.SqlToken> names = tableNames(sql);
+        StringBuilder builder = new StringBuilder(sql.length() + 16);
         int last = 0;
         for (TableNameParser.SqlToken name : names) {
             int start = name.getStart();
@@ -94,4 +122,40 @@ public class DynamicTableNameInnerInterceptor implements InnerInterceptor {
         }
         return builder.toString();
     }
+
+    /**
+     * 获取 sql 中表名的位置, 同一条 sql 的表名位置不会变化, 解析结果按 sql 缓存
+     *
+     * @param sql sql
+     * @return 表名
+     */
+    protected List<TableNameParser.SqlToken> tableNames(String sql) {
+        int cacheSize = tableNameCacheSize;
+        if (cacheSize > 0) {
+            List<TableNameParser.SqlToken> names = tableNameCache.get(sql);
+            if (names != null) {
+                return names;
+            }
+        }
+        List<TableNameParser.SqlToken> names = new ArrayList<>();
+        new TableNameParser(sql).accept(names::add);
+        if (cacheSize > 0) {
+            names = Collections.unmodifiableList(names);
+            if (tableNameCache.putIfAbsent(sql, names) == null) {
+                tableNameCacheOrder.offer(sql);
+                while (tableNameCache.size() > cacheSize) {
+                    String eldest = tableNameCacheOrder.poll();
+                    if (eldest == null) {
+                        break;
+                    }
+                    tableNameCache.remove(eldest);
+                }
+            }
+        }
+        return names;
+    }
+
+    int cachedTableNamesCount() {
+        return tableNameCache.size();
+    }
 }
@@ -16,11 +16,14 @@
 package com.baomidou.mybatisplus.extension.plugins.inner;
 
 import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.baomidou.mybatisplus.core.plugins.InterceptorIgnoreHelper;
 import com.baomidou.mybatisplus.core.toolkit.Assert;
-import com.baomidou.mybatisplus.core.toolkit.EncryptUtils;
 import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.baomidou.mybatisplus.core.toolkit.StringPool;
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserCache;
 import com.baomidou.mybatisplus.extension.parser.JsqlParserSupport;
 import lombok.Data;
 import net.sf.jsqlparser.expression.BinaryExpression;
@@ -42,12 +45,16 @@ import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 由于开发人员水平参差不齐，即使订了开发规范很多人也不遵守
@@ -80,12 +87,33 @@ public class IllegalSQLInnerInterceptor extends JsqlParserSupport implements Inn
 
     /**
      * 缓存验证结果，提高性能
+     * <p>
+     * key 为 MappedStatement id + sql, 只缓存验证通过的 sql
+     *
+     * @since 3.4.3
      */
-    private static final Set<String> cacheValidResult = new HashSet<>();
+    private JsqlParserCache validResultCache = new JsqlParserCache(4096);
     /**
      * 缓存表的索引信息
      */
-    private static final Map<String, List<IndexInfo>> indexInfoMap = new ConcurrentHashMap<>();
+    private final Map<String, List<IndexInfo>> indexInfoMap = new ConcurrentHashMap<>();
+    /**
+     * 后台加载索引信息的线程
+     */
+    private ScheduledExecutorService indexInfoLoader;
+
+    public JsqlParserCache getValidResultCache() {
+        return validResultCache;
+    }
+
+    public void setValidResultCache(JsqlParserCache validResultCache) {
+        this.validResultCache = validResultCache;
+    }
+
+    @Override
+    public boolean willInterceptStatementHandler(MappedStatement ms) {
+        return ms.getSqlCommandType() != SqlCommandType.INSERT && !InterceptorIgnoreHelper.willIgnoreIllegalSql(ms.getId());
+    }
 
     @Override
     public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
@@ -96,14 +124,69 @@ public class IllegalSQLInnerInterceptor extends JsqlParserSupport implements Inn
         BoundSql boundSql = mpStatementHandler.boundSql();
         String originalSql = boundSql.getSql();
         logger.debug("检查SQL是否合规，SQL:" + originalSql);
-        String md5Base64 = EncryptUtils.md5Base64(originalSql);
-        if (cacheValidResult.contains(md5Base64)) {
+        if (validResultCache != null && validResultCache.get(this, originalSql, ms.getId()) != null) {
             logger.debug("该SQL已验证，无需再次验证，，SQL:" + originalSql);
             return;
         }
         parserSingle(originalSql, connection);
         //缓存验证结果
-        cacheValidResult.add(md5Base64);
+        if (validResultCache != null) {
+            validResultCache.put(this, originalSql, ms.getId(), StringPool.EMPTY);
+        }
+    }
+
+    /**
+     * 加载 {@link TableInfoHelper#getTableInfos()} 中所有表的索引信息
+     *
+     * @param dataSource 数据源
+     * @since 3.4.3
+     */
+    public void loadIndexInfos(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            for (TableInfo tableInfo : TableInfoHelper.getTableInfos()) {
+                String[] names = splitTableName(tableInfo.getTableName());
+                List<IndexInfo> indexInfos = loadIndexInfos(names[0], names[1], connection);
+                if (indexInfos != null) {
+                    indexInfoMap.put(indexInfoKey(names[0], names[1]), indexInfos);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("load index infos failed", e);
+        }
+    }
+
+    /**
+     * 在后台线程加载所有表的索引信息, 并按周期刷新, 之后检查 sql 时不再访问数据库(除非表不在 {@link TableInfoHelper} 中)
+     *
+     * @param dataSource 数据源
+     * @param period     刷新周期, 小于等于 0 时只加载一次
+     * @param unit       时间单位
+     * @since 3.4.3
+     */
+    public synchronized void startIndexInfoLoader(DataSource dataSource, long period, TimeUnit unit) {
+        stopIndexInfoLoader();
+        indexInfoLoader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "IllegalSQL Index Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (period > 0) {
+            indexInfoLoader.scheduleWithFixedDelay(() -> loadIndexInfos(dataSource), 0, period, unit);
+        } else {
+            indexInfoLoader.execute(() -> loadIndexInfos(dataSource));
+        }
+    }
+
+    /**
+     * 停止后台加载索引信息
+     *
+     * @since 3.4.3
+     */
+    public synchronized void stopIndexInfoLoader() {
+        if (indexInfoLoader != null) {
+            indexInfoLoader.shutdownNow();
+            indexInfoLoader = null;
+        }
     }
 
     @Override
@@ -203,18 +286,9 @@ public class IllegalSQLInnerInterceptor extends JsqlParserSupport implements Inn
         //是否使用索引
         boolean useIndexFlag = false;
 
-        String tableInfo = table.getName();
         //表存在的索引
-        String dbName = null;
-        String tableName;
-        String[] tableArray = tableInfo.split("\\.");
-        if (tableArray.length == 1) {
-            tableName = tableArray[0];
-        } else {
-            dbName = tableArray[0];
-            tableName = tableArray[1];
-        }
-        List<IndexInfo> indexInfos = getIndexInfos(dbName, tableName, connection);
+        String[] names = splitTableName(table.getName());
+        List<IndexInfo> indexInfos = getIndexInfos(names[0], names[1], connection);
         for (IndexInfo indexInfo : indexInfos) {
             if (null != columnName && columnName.equalsIgnoreCase(indexInfo.getColumnName())) {
                 useIndexFlag = true;
@@ -288,7 +362,7 @@ public class IllegalSQLInnerInterceptor extends JsqlParserSupport implements Inn
      * @return ignore
      */
     public List<IndexInfo> getIndexInfos(String dbName, String tableName, Connection conn) {
-        return getIndexInfos(null, dbName, tableName, conn);
+        return getIndexInfos(indexInfoKey(dbName, tableName), dbName, tableName, conn);
     }
 
     /**
@@ -305,14 +379,22 @@ public class IllegalSQLInnerInterceptor extends JsqlParserSupport implements Inn
         if (StringUtils.isNotBlank(key)) {
             indexInfos = indexInfoMap.get(key);
         }
-        if (indexInfos == null || indexInfos.isEmpty()) {
-            ResultSet rs;
-            try {
-                DatabaseMetaData metadata = conn.getMetaData();
-                String catalog = StringUtils.isBlank(dbName) ? conn.getCatalog() : dbName;
-                String schema = StringUtils.isBlank(dbName) ? conn.getSchema() : dbName;
-                rs = metadata.getIndexInfo(catalog, schema, tableName, false, true);
-                indexInfos = new ArrayList<>();
+        if (indexInfos == null) {
+            indexInfos = loadIndexInfos(dbName, tableName, conn);
+            if (indexInfos != null && StringUtils.isNotBlank(key)) {
+                indexInfoMap.put(key, indexInfos);
+            }
+        }
+        return indexInfos;
+    }
+
+    private List<IndexInfo> loadIndexInfos(String dbName, String tableName, Connection conn) {
+        try {
+            DatabaseMetaData metadata = conn.getMetaData();
+            String catalog = StringUtils.isBlank(dbName) ? conn.getCatalog() : dbName;
+            String schema = StringUtils.isBlank(dbName) ? conn.getSchema() : dbName;
+            List<IndexInfo> indexInfos = new ArrayList<>();
+            try (ResultSet rs = metadata.getIndexInfo(catalog, schema, tableName, false, true)) {
                 while (rs.next()) {
                     //索引中的列序列号等于1，才有效
                     if (Objects.equals(rs.getString(8), "1")) {
@@ -323,14 +405,30 @@ public class IllegalSQLInnerInterceptor extends JsqlParserSupport implements Inn
                         indexInfos.add(indexInfo);
                     }
                 }
-                if (StringUtils.isNotBlank(key)) {
-                    indexInfoMap.put(key, indexInfos);
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
+            return indexInfos;
+        } catch (SQLException e) {
+            logger.error("load index infos of " + tableName + " failed", e);
+            return null;
         }
-        return indexInfos;
+    }
+
+    /**
+     * 拆分 库名.表名
+     *
+     * @return [库名(可能为 null), 表名]
+     */
+    private String[] splitTableName(String fullTableName) {
+        String[] tableArray = fullTableName.split("\\.");
+        if (tableArray.length == 1) {
+            return new String[]{null, tableArray[0]};
+        }
+        return new String[]{tableArray[0], tableArray[1]};
+    }
+
+    private String indexInfoKey(String dbName, String tableName) {
+        String key = StringUtils.isBlank(dbName) ? tableName : dbName + StringPool.DOT + tableName;
+        return key.toLowerCase(Locale.ENGLISH);
     }
 
     /**
@@ -24,10 +24,12 @@ import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -70,6 +72,40 @@ public interface InnerInterceptor {
         // do nothing
     }
 
+    /**
+     * {@link Executor#query(MappedStatement, Object, RowBounds, ResultHandler, CacheKey, BoundSql)} 操作后置处理
+     * <p>
+     * 只有 query 正常返回时才会调用
+     *
+     * @param executor      Executor(可能是代理对象)
+     * @param ms            MappedStatement
+     * @param parameter     parameter
+     * @param rowBounds     rowBounds
+     * @param resultHandler resultHandler
+     * @param boundSql      boundSql
+     * @param result        查询结果
+     * @return 处理后的查询结果(不要直接修改 result, 它可能已经被一级缓存引用)
+     * @since 3.4.3
+     */
+    default List<?> afterQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql, List<?> result) throws SQLException {
+        return result;
+    }
+
+    /**
+     * {@link Executor#query(MappedStatement, Object, RowBounds, ResultHandler, CacheKey, BoundSql)} 整个流程结束后执行
+     * <p>
+     * 无论 query 是否成功, 或者被 willDoQuery 跳过都会调用, 用于释放 beforeQuery 中申请的资源
+     *
+     * @param executor  Executor(可能是代理对象)
+     * @param ms        MappedStatement
+     * @param parameter parameter
+     * @param boundSql  boundSql
+     * @since 3.4.3
+     */
+    default void afterQueryCompletion(Executor executor, MappedStatement ms, Object parameter, BoundSql boundSql) {
+        // do nothing
+    }
+
     /**
      * 判断是否执行 {@link Executor#update(MappedStatement, Object)}
      * <p>
@@ -96,6 +132,18 @@ public interface InnerInterceptor {
         // do nothing
     }
 
+    /**
+     * {@link Executor#commit(boolean)}, {@link Executor#rollback(boolean)} 或 {@link Executor#close(boolean)} 之后执行
+     * <p>
+     * 由 spring 管理的事务中, executor 的 commit 早于事务真正提交, 需要的话应使用 spring 的 TransactionSynchronization
+     *
+     * @param transaction 该 executor 的 Transaction
+     * @since 3.4.3
+     */
+    default void afterCompletion(Transaction transaction) {
+        // do nothing
+    }
+
     /**
      * {@link StatementHandler#prepare(Connection, Integer)} 操作前置处理
      * <p>
@@ -120,6 +168,32 @@ public interface InnerInterceptor {
         // do nothing
     }
 
+    /**
+     * 是否需要拦截该 MappedStatement 的 {@link Executor} 阶段(query/update)
+     * <p>
+     * 结果会被 MybatisPlusInterceptor 按 {@link MappedStatement#getId()} 缓存, 只能依据 MappedStatement 自身的信息判断
+     *
+     * @param ms MappedStatement
+     * @return 返回 false 时 willDoQuery/beforeQuery/willDoUpdate/beforeUpdate 都不会被调用
+     * @since 3.4.3
+     */
+    default boolean willInterceptExecutor(MappedStatement ms) {
+        return true;
+    }
+
+    /**
+     * 是否需要拦截该 MappedStatement 的 {@link StatementHandler} 阶段(prepare/getBoundSql)
+     * <p>
+     * 结果会被 MybatisPlusInterceptor 按 {@link MappedStatement#getId()} 缓存, 只能依据 MappedStatement 自身的信息判断
+     *
+     * @param ms MappedStatement
+     * @return 返回 false 时 beforePrepare/beforeGetBoundSql 都不会被调用
+     * @since 3.4.3
+     */
+    default boolean willInterceptStatementHandler(MappedStatement ms) {
+        return true;
+    }
+
     default void setProperties(Properties properties) {
         // do nothing
     }
@@ -60,6 +60,11 @@ public class OptimisticLockerInnerInterceptor implements InnerInterceptor {
 
     private static final String PARAM_UPDATE_METHOD_NAME = "update";
 
+    @Override
+    public boolean willInterceptExecutor(MappedStatement ms) {
+        return SqlCommandType.UPDATE == ms.getSqlCommandType();
+    }
+
     @Override
     public void beforeUpdate(Executor executor, MappedStatement ms, Object parameter) throws SQLException {
         if (SqlCommandType.UPDATE != ms.getSqlCommandType()) {
@@ -18,38 +18,56 @@ package com.baomidou.mybatisplus.extension.plugins.inner;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.core.metadata.OrderItem;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.baomidou.mybatisplus.core.toolkit.*;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserCache;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserContext;
+import com.baomidou.mybatisplus.extension.plugins.pagination.CountCache;
 import com.baomidou.mybatisplus.extension.plugins.pagination.DialectFactory;
 import com.baomidou.mybatisplus.extension.plugins.pagination.DialectModel;
+import com.baomidou.mybatisplus.extension.plugins.pagination.KeysetPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.dialects.IDialect;
+import com.baomidou.mybatisplus.extension.plugins.pagination.dialects.MySqlDialect;
 import com.baomidou.mybatisplus.extension.toolkit.JdbcUtils;
 import com.baomidou.mybatisplus.extension.toolkit.PropertyMapper;
 import com.baomidou.mybatisplus.extension.toolkit.SqlParserUtils;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.Function;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.select.*;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
@@ -67,6 +85,36 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
 
     protected static final List<SelectItem> COUNT_SELECT_ITEM = Collections.singletonList(defaultCountSelectItem());
     protected static final Map<String, MappedStatement> countMsCache = new ConcurrentHashMap<>();
+    /**
+     * 连接地址 -> 方言, 未指定 dbType 和 dialect 时使用
+     *
+     * @since 3.4.3
+     */
+    protected static final Map<String, IDialect> dialectCache = new ConcurrentHashMap<>();
+    /**
+     * 游标条件占位列
+     */
+    private static final String KEYSET_MARKER = "MYBATIS_PLUS_KEYSET_MARKER";
+    /**
+     * 游标参数名前缀
+     */
+    private static final String KEYSET_PARAM_NAME = "mybatis_plus_keyset_";
+    /**
+     * 并发 count 的 Future 在 boundSql 中的参数名
+     */
+    private static final String COUNT_FUTURE_NAME = "mybatis_plus_count_future";
+    /**
+     * 多查一条判断是否有下一页时, 实际每页条数在 boundSql 中的参数名
+     */
+    private static final String HAS_NEXT_SIZE_NAME = "mybatis_plus_has_next_size";
+    /**
+     * 延后到查询之后执行的 count 在 boundSql 中的参数名
+     */
+    private static final String LAZY_COUNT_NAME = "mybatis_plus_lazy_count";
+    /**
+     * {@link #sqlCache} 中 countSql 的上下文 key
+     */
+    private static final String COUNT_SQL_KEY = "count";
     protected final Log logger = LogFactory.getLog(this.getClass());
 
     /**
@@ -106,6 +154,56 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
      * @since 3.4.2
      */
     protected boolean optimizeJoin = true;
+    /**
+     * count 结果缓存, 为 null 不缓存
+     * <p>
+     * 查看 {@link CountCache}
+     *
+     * @since 3.4.3
+     */
+    private CountCache countCache;
+    /**
+     * 并发执行 count 的线程池, 为 null 时先 count 再查询(count 为 0 时不再查询)
+     * <p>
+     * 设置后在不在事务中(autoCommit)并且未开启 overflow 时, count 使用同一个 DataSource 的另一个连接与分页查询同时执行,
+     * 依赖线程绑定数据源路由的多数据源不要开启
+     * <p>
+     * 每个并发的分页查询同时占用两个连接, 连接池大小应大于 2 倍的并发分页数, 否则可能出现分页查询持有连接等待 count,
+     * count 却拿不到连接的情况, 可以通过 {@link #countTimeout} 限制等待时间
+     *
+     * @since 3.4.3
+     */
+    private ExecutorService countExecutor;
+    /**
+     * 并发 count 时分页查询等待 count 结果的最长毫秒数, 为 null 时一直等待, 超时抛出异常
+     *
+     * @since 3.4.3
+     */
+    private Long countTimeout;
+    /**
+     * offset 达到该值时使用延迟关联(只对 mysql 类数据库生效), 为 null 不使用
+     * <p>
+     * 查看 {@link #deferredJoin(String)}
+     *
+     * @since 3.4.3
+     */
+    private Long deferredJoinOffset;
+    /**
+     * 第一页先查询再 count
+     * <p>
+     * 第一页查询结果不满一页时总数就是结果条数, 不再执行 count, 只有满一页时才补上 count
+     *
+     * @since 3.4.3
+     */
+    private boolean lazyCount;
+    /**
+     * 自动优化的 countSql 和拼接了 order by 的 sql 的缓存, 为 null 不缓存
+     *
+     * @since 3.4.3
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private JsqlParserCache sqlCache = new JsqlParserCache(1024);
 
     public PaginationInnerInterceptor(DbType dbType) {
         this.dbType = dbType;
@@ -121,23 +219,285 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
     @Override
     public boolean willDoQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
         IPage<?> page = ParameterUtils.findPage(parameter).orElse(null);
-        if (page == null || page.getSize() < 0 || !page.searchCount()) {
+        if (page == null || page.getSize() < 0 || !page.searchCount() || page.searchHasNext()) {
             return true;
         }
 
+        if (page.estimateCount()) {
+            Long estimated = estimateCount(executor, ms, parameter, boundSql);
+            if (estimated != null) {
+                page.setTotal(estimated);
+                page.setTotalExact(false);
+                // 估算值不可靠, 不据此中断查询
+                return true;
+            }
+        }
+
         BoundSql countSql;
+        boolean bounded = false;
         MappedStatement countMs = buildCountMappedStatement(ms, page.countId());
         if (countMs != null) {
             countSql = countMs.getBoundSql(parameter);
         } else {
             countMs = buildAutoCountMappedStatement(ms);
-            String countSqlStr = autoCountSql(page.optimizeCountSql(), boundSql.getSql());
             PluginUtils.MPBoundSql mpBoundSql = PluginUtils.mpBoundSql(boundSql);
-            countSql = new BoundSql(countMs.getConfiguration(), countSqlStr, mpBoundSql.parameterMappings(), parameter);
-            PluginUtils.setAdditionalParameter(countSql, mpBoundSql.additionalParameters());
+            List<ParameterMapping> mappings = mpBoundSql.parameterMappings();
+            Map<String, Object> additionalParameters = new HashMap<>(mpBoundSql.additionalParameters());
+            String countSqlStr;
+            Long countLimit = page.countLimit();
+            if (countLimit != null && countLimit > 0) {
+                // 有上限时只数前 countLimit 条
+                bounded = true;
+                DialectModel model = findIDialect(executor).buildPaginationSql(boundSql.getSql(), 0, countLimit);
+                model.consumers(mappings, ms.getConfiguration(), additionalParameters);
+                countSqlStr = lowLevelCountSql(model.getDialectSql());
+            } else {
+                countSqlStr = cachedAutoCountSql(page.optimizeCountSql(), boundSql.getSql());
+            }
+            countSql = new BoundSql(countMs.getConfiguration(), countSqlStr, mappings, parameter);
+            PluginUtils.setAdditionalParameter(countSql, additionalParameters);
         }
 
         CacheKey cacheKey = executor.createCacheKey(countMs, parameter, rowBounds, countSql);
+        if (lazyCount(page)) {
+            // countSql 要在分页 sql 拼接前构造好
+            boundSql.setAdditionalParameter(LAZY_COUNT_NAME, new LazyCount(countMs, countSql, cacheKey, bounded));
+            return true;
+        }
+        if (concurrentCount(executor)) {
+            final MappedStatement finalCountMs = countMs;
+            final BoundSql finalCountSql = countSql;
+            final boolean finalBounded = bounded;
+            // 取消后尚未开始的 count 不再执行
+            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+                try {
+                    setTotal(page, concurrentCount(finalCountMs, parameter, rowBounds, cacheKey, finalCountSql), finalBounded);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, countExecutor);
+            boundSql.setAdditionalParameter(COUNT_FUTURE_NAME, future);
+            return true;
+        }
+        setTotal(page, count(executor, countMs, parameter, rowBounds, resultHandler, cacheKey, countSql), bounded);
+        return continuePage(page);
+    }
+
+    /**
+     * 是否先查询第一页再决定要不要 count
+     *
+     * @param page 分页对象
+     * @return 是否延后 count
+     * @since 3.4.3
+     */
+    protected boolean lazyCount(IPage<?> page) {
+        if (!lazyCount || page.getCurrent() > 1) {
+            return false;
+        }
+        return !(page instanceof KeysetPage) || ((KeysetPage<?>) page).getLastKeys() == null;
+    }
+
+    /**
+     * 并发 count 时等待 count 结果, 延后 count 时根据第一页结果决定是否 count, 多查一条判断是否有下一页时去掉多查的那条
+     */
+    @Override
+    public List<?> afterQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql, List<?> result) throws SQLException {
+        if (boundSql.hasAdditionalParameter(COUNT_FUTURE_NAME)) {
+            Future<?> future = (Future<?>) boundSql.getAdditionalParameter(COUNT_FUTURE_NAME);
+            try {
+                if (countTimeout == null) {
+                    future.get();
+                } else {
+                    future.get(countTimeout, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw ExceptionUtils.mpe(e);
+            } catch (TimeoutException e) {
+                throw ExceptionUtils.mpe("wait for count timeout after %d ms, the pool may be exhausted", e, countTimeout);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                throw ExceptionUtils.mpe(cause);
+            }
+        }
+        if (boundSql.hasAdditionalParameter(LAZY_COUNT_NAME)) {
+            LazyCount lazy = (LazyCount) boundSql.getAdditionalParameter(LAZY_COUNT_NAME);
+            IPage<?> page = ParameterUtils.findPage(parameter).orElse(null);
+            if (page != null) {
+                if (result.size() < page.getSize()) {
+                    setTotal(page, result.size(), false);
+                } else {
+                    setTotal(page, count(executor, lazy.countMs, parameter, rowBounds, resultHandler, lazy.cacheKey,
+                        lazy.countSql), lazy.bounded);
+                }
+            }
+        }
+        if (boundSql.hasAdditionalParameter(HAS_NEXT_SIZE_NAME)) {
+            int size = (int) (long) boundSql.getAdditionalParameter(HAS_NEXT_SIZE_NAME);
+            boolean hasNext = result.size() > size;
+            ParameterUtils.findPage(parameter).ifPresent(page -> page.setHasNext(hasNext));
+            if (hasNext) {
+                // result 可能已被一级缓存引用, 不能直接修改
+                return new ArrayList<>(result.subList(0, size));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 设置总数
+     *
+     * @param page    分页对象
+     * @param total   count 结果
+     * @param bounded 是否为有上限的 count
+     */
+    private void setTotal(IPage<?> page, long total, boolean bounded) {
+        page.setTotal(total);
+        page.setTotalExact(!bounded || total < page.countLimit());
+    }
+
+    /**
+     * 根据执行计划估算总数
+     * <p>
+     * 在事务中时先设置保存点, 结束后回滚到保存点:
+     * postgresql 中失败的 EXPLAIN 会让整个事务失效, oracle 的 EXPLAIN PLAN 会写 PLAN_TABLE, 都不能留在调用方的事务里;
+     * 连接不支持保存点时不估算
+     * </p>
+     *
+     * @return 估算的总数, 数据库不支持或者估算失败返回 null
+     * @since 3.4.3
+     */
+    protected Long estimateCount(Executor executor, MappedStatement ms, Object parameter, BoundSql boundSql) {
+        Connection connection;
+        Savepoint savepoint = null;
+        try {
+            connection = executor.getTransaction().getConnection();
+            if (!connection.getAutoCommit()) {
+                savepoint = connection.setSavepoint();
+            }
+        } catch (Exception e) {
+            logger.warn("estimate count skipped, fallback to count sql, sql:\"" + boundSql.getSql() + "\", exception:\n" + e);
+            return null;
+        }
+        try {
+            ParameterHandler parameterHandler = ms.getConfiguration().newParameterHandler(ms, parameter, boundSql);
+            return findIDialect(executor).estimateCount(connection, boundSql.getSql(), parameterHandler);
+        } catch (Exception e) {
+            logger.warn("estimate count failed, fallback to count sql, sql:\"" + boundSql.getSql() + "\", exception:\n" + e);
+            return null;
+        } finally {
+            if (savepoint != null) {
+                rollbackEstimate(connection, savepoint);
+            }
+        }
+    }
+
+    private void rollbackEstimate(Connection connection, Savepoint savepoint) {
+        try {
+            connection.rollback(savepoint);
+        } catch (SQLException e) {
+            logger.warn("rollback estimate count savepoint failed, exception:\n" + e);
+            return;
+        }
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException ignored) {
+            // oracle 不支持释放保存点, 事务结束时自动释放
+        }
+    }
+
+    /**
+     * 分页查询失败或等待超时时取消还未完成的 count, 避免继续占用连接
+     */
+    @Override
+    public void afterQueryCompletion(Executor executor, MappedStatement ms, Object parameter, BoundSql boundSql) {
+        if (boundSql.hasAdditionalParameter(COUNT_FUTURE_NAME)) {
+            Future<?> future = (Future<?>) boundSql.getAdditionalParameter(COUNT_FUTURE_NAME);
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * 是否并发执行 count
+     * <p>
+     * 开启了 overflow 需要先知道总数才能确定查询哪一页, 在事务中需要在同一个连接上查询, 这两种情况都不并发
+     *
+     * @param executor Executor
+     * @return 是否并发
+     * @since 3.4.3
+     */
+    protected boolean concurrentCount(Executor executor) throws SQLException {
+        return countExecutor != null && !overflow && executor.getTransaction().getConnection().getAutoCommit();
+    }
+
+    /**
+     * 使用同一个 DataSource 的另一个连接执行 count 查询
+     *
+     * @return count
+     * @since 3.4.3
+     */
+    protected long concurrentCount(MappedStatement countMs, Object parameter, RowBounds rowBounds, CacheKey cacheKey,
+                                   BoundSql countSql) throws SQLException {
+        Configuration configuration = countMs.getConfiguration();
+        Environment environment = configuration.getEnvironment();
+        Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, true);
+        Executor executor = new SimpleExecutor(configuration, transaction);
+        try {
+            return count(executor, countMs, parameter, rowBounds, Executor.NO_RESULT_HANDLER, cacheKey, countSql);
+        } finally {
+            executor.close(false);
+        }
+    }
+
+    /**
+     * 获取 count, 开启了 count 缓存时优先从缓存获取
+     */
+    private long count(Executor executor, MappedStatement countMs, Object parameter, RowBounds rowBounds,
+                       ResultHandler resultHandler, CacheKey cacheKey, BoundSql countSql) throws SQLException {
+        CountCache countCache = this.countCache;
+        if (countCache == null) {
+            return queryCount(executor, countMs, parameter, rowBounds, resultHandler, cacheKey, countSql);
+        }
+        // 同一个 MappedStatement 可能路由到不同的数据源
+        CacheKey key = new CacheKey(new Object[]{JdbcUtils.getJdbcUrl(executor), cacheKey});
+        // 与写操作一样按替换表名之前的原始 sql 解析表名
+        return countCache.get(key, () -> countMs.getBoundSql(parameter).getSql(),
+            () -> queryCount(executor, countMs, parameter, rowBounds, resultHandler, cacheKey, countSql));
+    }
+
+    /**
+     * 写操作使 count 缓存失效, 所在事务结束前不缓存涉及的表
+     */
+    @Override
+    public void beforeUpdate(Executor executor, MappedStatement ms, Object parameter) throws SQLException {
+        CountCache countCache = this.countCache;
+        if (countCache != null) {
+            countCache.beginWrite(executor.getTransaction(), ms.getBoundSql(parameter).getSql());
+        }
+    }
+
+    /**
+     * 事务结束后再次使 count 缓存失效
+     */
+    @Override
+    public void afterCompletion(Transaction transaction) {
+        CountCache countCache = this.countCache;
+        if (countCache != null) {
+            countCache.endWrite(transaction);
+        }
+    }
+
+    /**
+     * 执行 count 查询
+     *
+     * @return count
+     * @since 3.4.3
+     */
+    protected long queryCount(Executor executor, MappedStatement countMs, Object parameter, RowBounds rowBounds,
+                              ResultHandler resultHandler, CacheKey cacheKey, BoundSql countSql) throws SQLException {
         List<Object> result = executor.query(countMs, parameter, rowBounds, resultHandler, cacheKey, countSql);
         long total = 0;
         if (CollectionUtils.isNotEmpty(result)) {
@@ -147,8 +507,7 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
                 total = Long.parseLong(o.toString());
             }
         }
-        page.setTotal(total);
-        return continuePage(page);
+        return total;
     }
 
     @Override
@@ -164,7 +523,7 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
         List<OrderItem> orders = page.orders();
         if (CollectionUtils.isNotEmpty(orders)) {
             addOrdered = true;
-            buildSql = this.concatOrderBy(buildSql, orders);
+            buildSql = this.cachedConcatOrderBy(buildSql, orders);
         }
 
         // size 小于 0 不构造分页sql
@@ -179,16 +538,96 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
         IDialect dialect = findIDialect(executor);
 
         final Configuration configuration = ms.getConfiguration();
-        DialectModel model = dialect.buildPaginationSql(buildSql, page.offset(), page.getSize());
         PluginUtils.MPBoundSql mpBoundSql = PluginUtils.mpBoundSql(boundSql);
-
         List<ParameterMapping> mappings = mpBoundSql.parameterMappings();
         Map<String, Object> additionalParameter = mpBoundSql.additionalParameters();
+        if (page instanceof KeysetPage) {
+            buildSql = this.concatKeyset(buildSql, (KeysetPage<?>) page, dialect, configuration, mappings, additionalParameter);
+        }
+
+        long limit = page.getSize();
+        if (page.searchHasNext()) {
+            // 多查一条判断是否有下一页
+            limit++;
+            boundSql.setAdditionalParameter(HAS_NEXT_SIZE_NAME, page.getSize());
+        }
+        DeferredJoin deferredJoin = null;
+        if (deferredJoinOffset != null && deferredJoinOffset > 0 && page.offset() >= deferredJoinOffset
+            && dialect instanceof MySqlDialect) {
+            deferredJoin = this.deferredJoin(buildSql);
+        }
+        DialectModel model = dialect.buildPaginationSql(deferredJoin == null ? buildSql : deferredJoin.innerSql, page.offset(), limit);
         model.consumers(mappings, configuration, additionalParameter);
-        mpBoundSql.sql(model.getDialectSql());
+        mpBoundSql.sql(deferredJoin == null ? model.getDialectSql() : deferredJoin.wrap(model.getDialectSql()));
         mpBoundSql.parameterMappings(mappings);
     }
 
+    /**
+     * 延迟关联: 子查询只按主键分页, 再关联回原表取整行
+     * <p>
+     * {@code SELECT * FROM t WHERE .. ORDER BY .. LIMIT ?,?} 改写为
+     * {@code SELECT t.* FROM t INNER JOIN (SELECT id AS MP_DJ_KEY FROM t WHERE .. ORDER BY .. LIMIT ?,?) MP_DJ ON t.id = MP_DJ.MP_DJ_KEY ORDER BY ..}
+     * </p>
+     * <p>
+     * 只支持单表并且能通过 {@link TableInfoHelper} 找到主键的查询, 参数顺序保持不变
+     * </p>
+     *
+     * @param sql 已经拼接好 order by 的SQL
+     * @return 无法改写时返回 null
+     * @since 3.4.3
+     */
+    protected DeferredJoin deferredJoin(String sql) {
+        try {
+            Select select = (Select) JsqlParserContext.parse(sql);
+            if (!(select.getSelectBody() instanceof PlainSelect) || CollectionUtils.isNotEmpty(select.getWithItemsList())) {
+                return null;
+            }
+            PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
+            if (!(plainSelect.getFromItem() instanceof Table) || CollectionUtils.isNotEmpty(plainSelect.getJoins())
+                || plainSelect.getDistinct() != null || plainSelect.getGroupBy() != null || plainSelect.getHaving() != null
+                || plainSelect.getLimit() != null || plainSelect.getOffset() != null || plainSelect.getFetch() != null
+                || plainSelect.isForUpdate() || plainSelect.getIntoTables() != null) {
+                return null;
+            }
+            List<OrderByElement> orderBy = plainSelect.getOrderByElements();
+            // 外层还要再排序一次, order by 里带参数会打乱参数顺序
+            if (orderBy != null && orderBy.stream().anyMatch(o -> o.toString().contains(StringPool.QUESTION_MARK))) {
+                return null;
+            }
+            Table table = (Table) plainSelect.getFromItem();
+            TableInfo tableInfo = TableInfoHelper.getTableInfo(table.getName());
+            if (tableInfo == null) {
+                tableInfo = TableInfoHelper.getTableInfo(StringUtils.getTargetColumn(table.getName()));
+            }
+            if (tableInfo == null || !tableInfo.havePK()) {
+                return null;
+            }
+            String tableAlias = table.getAlias() == null ? table.getFullyQualifiedName() : table.getAlias().getName();
+            List<SelectItem> selectItems = plainSelect.getSelectItems();
+            StringJoiner outerItems = new StringJoiner(StringPool.COMMA + StringPool.SPACE);
+            for (SelectItem item : selectItems) {
+                outerItems.add(item instanceof AllColumns ? tableAlias + ".*" : item.toString());
+            }
+            StringBuilder prefix = new StringBuilder("SELECT ").append(outerItems).append(" FROM ").append(table)
+                .append(" INNER JOIN (");
+            StringBuilder suffix = new StringBuilder(") MP_DJ ON ").append(tableAlias).append(StringPool.DOT)
+                .append(tableInfo.getKeyColumn()).append(" = MP_DJ.MP_DJ_KEY");
+            if (CollectionUtils.isNotEmpty(orderBy)) {
+                suffix.append(PlainSelect.orderByToString(orderBy));
+            }
+
+            SelectExpressionItem key = new SelectExpressionItem(new Column(tableInfo.getKeyColumn()));
+            key.setAlias(new Alias("MP_DJ_KEY"));
+            plainSelect.setSelectItems(Collections.singletonList(key));
+            return new DeferredJoin(prefix.toString(), select.toString(), suffix.toString());
+        } catch (JSQLParserException e) {
+            logger.warn("failed to build deferred join sql, exception:\n" + e.getCause());
+        } catch (Exception e) {
+            logger.warn("failed to build deferred join sql, exception:\n" + e);
+        }
+        return null;
+    }
+
     /**
      * 获取分页方言类的逻辑
      *
@@ -203,7 +642,8 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
             dialect = DialectFactory.getDialect(dbType);
             return dialect;
         }
-        return DialectFactory.getDialect(JdbcUtils.getDbType(executor));
+        return CollectionUtils.computeIfAbsent(dialectCache, JdbcUtils.getJdbcUrl(executor),
+            url -> DialectFactory.getDialect(JdbcUtils.getDbType(url)));
     }
 
     /**
@@ -254,6 +694,42 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
         });
     }
 
+    /**
+     * 从 {@link #sqlCache} 获取自动优化的 countSql, 未命中时调用 {@link #autoCountSql(boolean, String)}
+     *
+     * @since 3.4.3
+     */
+    protected String cachedAutoCountSql(boolean optimizeCountSql, String sql) {
+        JsqlParserCache sqlCache = this.sqlCache;
+        if (!optimizeCountSql || sqlCache == null) {
+            return autoCountSql(optimizeCountSql, sql);
+        }
+        String countSql = sqlCache.get(this, sql, COUNT_SQL_KEY);
+        if (countSql == null) {
+            countSql = autoCountSql(true, sql);
+            sqlCache.put(this, sql, COUNT_SQL_KEY, countSql);
+        }
+        return countSql;
+    }
+
+    /**
+     * 从 {@link #sqlCache} 获取拼接了 order by 的 sql, 未命中时调用 {@link #concatOrderBy(String, List)}
+     *
+     * @since 3.4.3
+     */
+    protected String cachedConcatOrderBy(String originalSql, List<OrderItem> orderList) {
+        JsqlParserCache sqlCache = this.sqlCache;
+        if (sqlCache == null) {
+            return concatOrderBy(originalSql, orderList);
+        }
+        String sql = sqlCache.get(this, originalSql, orderList);
+        if (sql == null) {
+            sql = concatOrderBy(originalSql, orderList);
+            sqlCache.put(this, originalSql, new ArrayList<>(orderList), sql);
+        }
+        return sql;
+    }
+
     /**
      * 获取自动优化的 countSql
      *
@@ -266,7 +742,7 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
             return lowLevelCountSql(sql);
         }
         try {
-            Select select = (Select) CCJSqlParserUtil.parse(sql);
+            Select select = (Select) JsqlParserContext.parse(sql);
             PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
             Distinct distinct = plainSelect.getDistinct();
             GroupByElement groupBy = plainSelect.getGroupBy();
@@ -373,7 +849,7 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
      */
     public String concatOrderBy(String originalSql, List<OrderItem> orderList) {
         try {
-            Select select = (Select) CCJSqlParserUtil.parse(originalSql);
+            Select select = (Select) JsqlParserContext.parse(originalSql);
             SelectBody selectBody = select.getSelectBody();
             if (selectBody instanceof PlainSelect) {
                 PlainSelect plainSelect = (PlainSelect) selectBody;
@@ -401,6 +877,98 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
         return originalSql;
     }
 
+    /**
+     * 游标分页: 查询SQL拼接游标条件
+     * <p>
+     * 排序方向一致并且数据库支持行值比较时拼接 {@code (a, b) > (?, ?)}, 否则展开成 {@code (a > ? OR (a = ? AND b > ?))}
+     * </p>
+     *
+     * @param originalSql          已经拼接好 order by 的SQL
+     * @param page                 游标分页对象
+     * @param dialect              分页方言
+     * @param configuration        Configuration
+     * @param mappings             ParameterMapping 集合, 游标参数会插入到对应位置
+     * @param additionalParameters additionalParameters map
+     * @return 拼接后的SQL
+     * @since 3.4.3
+     */
+    protected String concatKeyset(String originalSql, KeysetPage<?> page, IDialect dialect, Configuration configuration,
+                                  List<ParameterMapping> mappings, Map<String, Object> additionalParameters) {
+        List<OrderItem> orders = page.orders();
+        Assert.notEmpty(orders, "keyset pagination must have orders");
+        List<Object> keys = page.getLastKeys();
+        if (keys == null) {
+            return originalSql;
+        }
+        Assert.isTrue(keys.size() == orders.size(), "keyset pagination lastKeys size [%s] does not match orders size [%s]",
+            keys.size(), orders.size());
+        Select select;
+        try {
+            select = (Select) JsqlParserContext.parse(originalSql);
+        } catch (JSQLParserException e) {
+            throw ExceptionUtils.mpe("failed to concat keyset from KeysetPage, sql: %s", e.getCause(), originalSql);
+        }
+        SelectBody selectBody = select.getSelectBody();
+        Assert.isTrue(selectBody instanceof PlainSelect, "keyset pagination only supports plain select, sql: %s", originalSql);
+        PlainSelect plainSelect = (PlainSelect) selectBody;
+        // 先用占位列拼接, 再据此算出游标参数在 parameterMappings 中的位置
+        Column marker = new Column(KEYSET_MARKER);
+        Expression where = plainSelect.getWhere();
+        if (where == null) {
+            plainSelect.setWhere(marker);
+        } else {
+            plainSelect.setWhere(new AndExpression(where instanceof OrExpression ? new Parenthesis(where) : where, marker));
+        }
+        String sql = select.toString();
+        int markerIndex = sql.indexOf(KEYSET_MARKER);
+        int paramIndex = SqlParserUtils.countPlaceholders(sql, markerIndex);
+
+        StringBuilder predicate = new StringBuilder();
+        List<ParameterMapping> keysetMappings = new ArrayList<>();
+        boolean asc = orders.get(0).isAsc();
+        boolean sameDirection = orders.stream().allMatch(i -> i.isAsc() == asc);
+        if (orders.size() == 1) {
+            predicate.append(orders.get(0).getColumn()).append(asc ? " > ?" : " < ?");
+            keysetMappings.add(keysetMapping(configuration, 0));
+        } else if (sameDirection && dialect.supportRowValueComparison()) {
+            StringJoiner columns = new StringJoiner(", ", StringPool.LEFT_BRACKET, StringPool.RIGHT_BRACKET);
+            StringJoiner values = new StringJoiner(", ", StringPool.LEFT_BRACKET, StringPool.RIGHT_BRACKET);
+            for (int i = 0; i < orders.size(); i++) {
+                columns.add(orders.get(i).getColumn());
+                values.add(StringPool.QUESTION_MARK);
+                keysetMappings.add(keysetMapping(configuration, i));
+            }
+            predicate.append(columns).append(asc ? " > " : " < ").append(values);
+        } else {
+            predicate.append(StringPool.LEFT_BRACKET);
+            for (int i = 0; i < orders.size(); i++) {
+                if (i > 0) {
+                    predicate.append(" OR ");
+                }
+                predicate.append(StringPool.LEFT_BRACKET);
+                for (int j = 0; j < i; j++) {
+                    predicate.append(orders.get(j).getColumn()).append(" = ? AND ");
+                    keysetMappings.add(keysetMapping(configuration, j));
+                }
+                predicate.append(orders.get(i).getColumn()).append(orders.get(i).isAsc() ? " > ?" : " < ?");
+                keysetMappings.add(keysetMapping(configuration, i));
+                predicate.append(StringPool.RIGHT_BRACKET);
+            }
+            predicate.append(StringPool.RIGHT_BRACKET);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Object key = keys.get(i);
+            Assert.notNull(key, "keyset pagination lastKeys can not contain null");
+            additionalParameters.put(KEYSET_PARAM_NAME + i, key);
+        }
+        mappings.addAll(paramIndex, keysetMappings);
+        return sql.substring(0, markerIndex) + predicate + sql.substring(markerIndex + KEYSET_MARKER.length());
+    }
+
+    private ParameterMapping keysetMapping(Configuration configuration, int index) {
+        return new ParameterMapping.Builder(configuration, KEYSET_PARAM_NAME + index, Object.class).build();
+    }
+
     protected List<OrderByElement> addOrderByElements(List<OrderItem> orderList, List<OrderByElement> orderByElements) {
         List<OrderByElement> additionalOrderBy = orderList.stream()
             .filter(item -> StringUtils.isNotBlank(item.getColumn()))
@@ -471,6 +1039,45 @@ public class PaginationInnerInterceptor implements InnerInterceptor {
             .whenNotBlack("dbType", DbType::getDbType, this::setDbType)
             .whenNotBlack("dialect", ClassUtils::newInstance, this::setDialect)
             .whenNotBlack("maxLimit", Long::parseLong, this::setMaxLimit)
-            .whenNotBlack("optimizeJoin", Boolean::parseBoolean, this::setOptimizeJoin);
+            .whenNotBlack("optimizeJoin", Boolean::parseBoolean, this::setOptimizeJoin)
+            .whenNotBlack("deferredJoinOffset", Long::parseLong, this::setDeferredJoinOffset)
+            .whenNotBlack("lazyCount", Boolean::parseBoolean, this::setLazyCount)
+            .whenNotBlack("sqlCacheSize", Integer::parseInt, size -> setSqlCache(new JsqlParserCache(size)))
+            .whenNotBlack("countTimeout", Long::parseLong, this::setCountTimeout)
+            .whenNotBlack("countCacheTtl", Long::parseLong, ttl -> setCountCache(new CountCache(1024, ttl)));
+    }
+
+    /**
+     * 延迟关联改写结果
+     *
+     * @since 3.4.3
+     */
+    @AllArgsConstructor
+    protected static class DeferredJoin {
+
+        private final String prefix;
+        /**
+         * 只查主键的内层查询, 由分页方言拼接分页语句
+         */
+        private final String innerSql;
+        private final String suffix;
+
+        String wrap(String paginatedInnerSql) {
+            return prefix + paginatedInnerSql + suffix;
+        }
+    }
+
+    /**
+     * 延后执行的 count
+     *
+     * @since 3.4.3
+     */
+    @AllArgsConstructor
+    private static class LazyCount {
+
+        private final MappedStatement countMs;
+        private final BoundSql countSql;
+        private final CacheKey cacheKey;
+        private final boolean bounded;
     }
 }
@@ -37,6 +37,7 @@ import org.apache.ibatis.executor.BatchExecutor;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ReuseExecutor;
 import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.reflection.MetaObject;
@@ -57,6 +58,11 @@ public class ShardingInnerInterceptor extends JsqlParserSupport implements Inner
         shardingMap = Arrays.stream(shardingStrategies).collect(Collectors.toMap(ShardingStrategy::getLogicTable, i -> new ShardingStrategyProcessor(i, ClassUtils.newInstance(i.getProcessor()))));
     }
 
+    @Override
+    public boolean willInterceptStatementHandler(MappedStatement ms) {
+        return !InterceptorIgnoreHelper.willIgnoreSharding(ms.getId());
+    }
+
     @Override
     public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
         PluginUtils.MPStatementHandler mpSh = PluginUtils.mpStatementHandler(sh);
@@ -76,8 +82,7 @@ public class ShardingInnerInterceptor extends JsqlParserSupport implements Inner
         if (InterceptorIgnoreHelper.willIgnoreSharding(mpSh.mappedStatement().getId())) {
             return;
         }
-        PluginUtils.MPBoundSql mpBs = mpSh.mPBoundSql();
-        mpBs.sql(parserMulti(mpBs.sql(), mpSh));
+        processMulti(mpSh.boundSql(), mpSh);
     }
 
     @Override
@@ -17,7 +17,10 @@ package com.baomidou.mybatisplus.extension.plugins.inner;
 
 import com.baomidou.mybatisplus.core.plugins.InterceptorIgnoreHelper;
 import com.baomidou.mybatisplus.core.toolkit.*;
+import com.baomidou.mybatisplus.extension.injector.TenantLineSqlSource;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserContext;
 import com.baomidou.mybatisplus.extension.parser.JsqlParserSupport;
+import com.baomidou.mybatisplus.extension.parser.SingleTableSql;
 import com.baomidou.mybatisplus.extension.plugins.handler.TenantLineHandler;
 import com.baomidou.mybatisplus.extension.toolkit.PropertyMapper;
 import lombok.*;
@@ -31,11 +34,15 @@ import net.sf.jsqlparser.statement.delete.Delete;
 import net.sf.jsqlparser.statement.insert.Insert;
 import net.sf.jsqlparser.statement.select.*;
 import net.sf.jsqlparser.statement.update.Update;
+import org.apache.ibatis.executor.BatchExecutor;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ReuseExecutor;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 
@@ -50,33 +57,262 @@ import java.util.Properties;
  */
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 @ToString(callSuper = true)
 @EqualsAndHashCode(callSuper = true)
 @SuppressWarnings({"rawtypes"})
 public class TenantLineInnerInterceptor extends JsqlParserSupport implements InnerInterceptor {
 
+    /**
+     * 租户 ID 作为绑定参数时在 additionalParameters 中的名称
+     */
+    public static final String TENANT_ID_PARAMETER = "mybatis_plus_tenant_id";
+
     private TenantLineHandler tenantLineHandler;
+    /**
+     * 租户 ID 以 JDBC 参数 ? 的形式绑定, 而不是拼接为字面量
+     * <p>
+     * 开启后改写后的 sql 与租户无关, 可以命中驱动的预编译缓存和 {@link com.baomidou.mybatisplus.extension.parser.JsqlParserCache},
+     * 参数值取自 {@link TenantLineHandler#getTenantIdValue()}
+     *
+     * @since 3.4.3
+     */
+    private boolean tenantIdAsParameter;
+    /**
+     * 简单单表 sql 不经过 JsqlParser, 直接在 sql 文本上追加租户条件
+     * <p>
+     * 只处理 {@link SingleTableSql} 能识别的 select / update / delete, 其余仍走 JsqlParser,
+     * 改写结果与 JsqlParser 语义一致但保留原 sql 的格式
+     *
+     * @since 3.4.3
+     */
+    private boolean fastRewrite;
+
+    public TenantLineInnerInterceptor(TenantLineHandler tenantLineHandler) {
+        this.tenantLineHandler = tenantLineHandler;
+    }
+
+    public TenantLineInnerInterceptor(TenantLineHandler tenantLineHandler, boolean tenantIdAsParameter) {
+        this.tenantLineHandler = tenantLineHandler;
+        this.tenantIdAsParameter = tenantIdAsParameter;
+    }
+
+    @Override
+    public boolean willInterceptExecutor(MappedStatement ms) {
+        // 注入时已经改写过的不再处理
+        return !(ms.getSqlSource() instanceof TenantLineSqlSource) && !InterceptorIgnoreHelper.willIgnoreTenantLine(ms.getId());
+    }
+
+    @Override
+    public boolean willInterceptStatementHandler(MappedStatement ms) {
+        SqlCommandType sct = ms.getSqlCommandType();
+        return (sct == SqlCommandType.INSERT || sct == SqlCommandType.UPDATE || sct == SqlCommandType.DELETE)
+            && willInterceptExecutor(ms);
+    }
 
     @Override
     public void beforeQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
-        if (InterceptorIgnoreHelper.willIgnoreTenantLine(ms.getId())) return;
-        PluginUtils.MPBoundSql mpBs = PluginUtils.mpBoundSql(boundSql);
-        mpBs.sql(parserSingle(mpBs.sql(), null));
+        if (!willInterceptExecutor(ms)) return;
+        if (tenantIdAsParameter) {
+            processWithParameter(boundSql, ms.getConfiguration(), false);
+        } else {
+            processSingle(boundSql, null);
+        }
     }
 
     @Override
     public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
         PluginUtils.MPStatementHandler mpSh = PluginUtils.mpStatementHandler(sh);
+        if (tenantIdAsParameter) {
+            // 参数化时 BatchExecutor 和 ReuseExecutor 需要在 getBoundSql 时处理, 否则复用的 Statement 与参数对应不上
+            final Executor executor = mpSh.executor();
+            if (executor instanceof BatchExecutor || executor instanceof ReuseExecutor) {
+                return;
+            }
+        }
+        doParse(mpSh);
+    }
+
+    @Override
+    public void beforeGetBoundSql(StatementHandler sh) {
+        if (tenantIdAsParameter) {
+            doParse(PluginUtils.mpStatementHandler(sh));
+        }
+    }
+
+    private void doParse(PluginUtils.MPStatementHandler mpSh) {
         MappedStatement ms = mpSh.mappedStatement();
-        SqlCommandType sct = ms.getSqlCommandType();
-        if (sct == SqlCommandType.INSERT || sct == SqlCommandType.UPDATE || sct == SqlCommandType.DELETE) {
-            if (InterceptorIgnoreHelper.willIgnoreTenantLine(ms.getId())) return;
-            PluginUtils.MPBoundSql mpBs = mpSh.mPBoundSql();
-            mpBs.sql(parserMulti(mpBs.sql(), null));
+        if (willInterceptStatementHandler(ms)) {
+            BoundSql boundSql = mpSh.boundSql();
+            if (tenantIdAsParameter) {
+                processWithParameter(boundSql, mpSh.configuration(), true);
+            } else {
+                processMulti(boundSql, null);
+            }
         }
     }
 
+    private void processWithParameter(BoundSql boundSql, Configuration configuration, boolean multi) {
+        JsqlParserContext context = JsqlParserContext.current();
+        if (context != null) {
+            // 先回写前面插件对共享 Statement 的修改
+            context.flush();
+        }
+        String sql = boundSql.getSql();
+        bindTenantIdParameter(boundSql, configuration, multi ? parserMulti(sql, null) : parserSingle(sql, null));
+    }
+
+    @Override
+    public String parserSingle(String sql, Object obj) {
+        String rewritten = fastRewrite ? rewriteSimpleSql(sql) : null;
+        return rewritten == null ? super.parserSingle(sql, obj) : rewritten;
+    }
+
+    @Override
+    public String parserMulti(String sql, Object obj) {
+        String rewritten = fastRewrite ? rewriteSimpleSql(sql) : null;
+        return rewritten == null ? super.parserMulti(sql, obj) : rewritten;
+    }
+
+    @Override
+    public void processSingle(BoundSql boundSql, Object obj) {
+        if (!fastProcess(boundSql)) {
+            super.processSingle(boundSql, obj);
+        }
+    }
+
+    @Override
+    public void processMulti(BoundSql boundSql, Object obj) {
+        if (!fastProcess(boundSql)) {
+            super.processMulti(boundSql, obj);
+        }
+    }
+
+    private boolean fastProcess(BoundSql boundSql) {
+        if (!fastRewrite) {
+            return false;
+        }
+        JsqlParserContext context = JsqlParserContext.current();
+        if (context != null) {
+            // 基于 sql 文本改写, 先回写前面插件对共享 Statement 的修改
+            context.flush();
+        }
+        String rewritten = rewriteSimpleSql(boundSql.getSql());
+        if (rewritten == null) {
+            return false;
+        }
+        PluginUtils.mpBoundSql(boundSql).sql(rewritten);
+        return true;
+    }
+
+    /**
+     * 直接在 sql 文本上追加租户条件
+     * <p>
+     * 追加的位置和括号与 {@link #processPlainSelect(PlainSelect)} 及 {@link #andExpression(Table, Expression)} 一致
+     *
+     * @param sql 原始 sql
+     * @return 改写后的 sql, 不是简单单表 sql 时返回 null
+     */
+    protected String rewriteSimpleSql(String sql) {
+        SingleTableSql single = SingleTableSql.parse(sql);
+        if (single == null) {
+            return null;
+        }
+        if (tenantLineHandler.ignoreTable(single.getTableName())) {
+            return sql;
+        }
+        StringBuilder condition = new StringBuilder();
+        if (single.getAlias() != null) {
+            condition.append(single.getAlias()).append(StringPool.DOT);
+        }
+        condition.append(tenantLineHandler.getTenantIdColumn()).append(" = ").append(tenantIdExpression());
+        StringBuilder sb = new StringBuilder(sql.length() + condition.length() + 16);
+        if (!single.hasWhere()) {
+            int insertIndex = single.getInsertIndex();
+            return sb.append(sql, 0, insertIndex).append(" WHERE ").append(condition)
+                .append(sql, insertIndex, sql.length()).toString();
+        }
+        int whereStart = single.getWhereStart();
+        int whereEnd = single.getWhereEnd();
+        if (single.getSqlCommandType() == SqlCommandType.SELECT) {
+            if (single.isOrWhere()) {
+                sb.append(sql, 0, whereStart).append(StringPool.LEFT_BRACKET).append(sql, whereStart, whereEnd)
+                    .append(StringPool.RIGHT_BRACKET);
+            } else {
+                sb.append(sql, 0, whereEnd);
+            }
+            sb.append(" AND ").append(condition);
+        } else {
+            sb.append(sql, 0, whereStart).append(condition).append(" AND ");
+            if (single.isOrWhere()) {
+                sb.append(StringPool.LEFT_BRACKET).append(sql, whereStart, whereEnd).append(StringPool.RIGHT_BRACKET);
+            } else {
+                sb.append(sql, whereStart, whereEnd);
+            }
+        }
+        return sb.append(sql, whereEnd, sql.length()).toString();
+    }
+
+    /**
+     * 把 sql 中租户 ID 的占位符替换为 ?, 并在对应位置插入 ParameterMapping
+     *
+     * @param boundSql      BoundSql
+     * @param configuration Configuration
+     * @param sql           改写后带占位符的 sql
+     */
+    public void bindTenantIdParameter(BoundSql boundSql, Configuration configuration, String sql) {
+        final String marker = StringPool.COLON + TENANT_ID_PARAMETER;
+        PluginUtils.MPBoundSql mpBs = PluginUtils.mpBoundSql(boundSql);
+        List<ParameterMapping> mappings = mpBs.parameterMappings();
+        StringBuilder sb = new StringBuilder(sql.length());
+        Object tenantId = null;
+        ParameterMapping tenantIdMapping = null;
+        int index = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '?') {
+                index++;
+            } else if (c == ':' && sql.startsWith(marker, i)) {
+                if (tenantIdMapping == null) {
+                    tenantId = tenantLineHandler.getTenantIdValue();
+                    tenantIdMapping = new ParameterMapping.Builder(configuration, TENANT_ID_PARAMETER,
+                        tenantId == null ? Object.class : tenantId.getClass()).build();
+                }
+                mappings.add(index++, tenantIdMapping);
+                sb.append(StringPool.QUESTION_MARK);
+                i += marker.length() - 1;
+                continue;
+            }
+            sb.append(c);
+        }
+        if (tenantIdMapping != null) {
+            boundSql.setAdditionalParameter(TENANT_ID_PARAMETER, tenantId);
+            mpBs.parameterMappings(mappings);
+        }
+        mpBs.sql(sb.toString());
+    }
+
+    /**
+     * 租户 ID 表达式
+     *
+     * @return 字面量或者参数占位符
+     */
+    protected Expression tenantIdExpression() {
+        return tenantIdAsParameter ? new JdbcNamedParameter(TENANT_ID_PARAMETER) : tenantLineHandler.getTenantId();
+    }
+
+    @Override
+    protected boolean supportParserContext() {
+        // 参数化时需要在回写 sql 的同时插入 ParameterMapping
+        return !tenantIdAsParameter;
+    }
+
     @Override
     protected void processSelect(Select select, int index, String sql, Object obj) {
         processSelectBody(select.getSelectBody());
@@ -127,7 +363,7 @@ public class TenantLineInnerInterceptor extends JsqlParserSupport implements Inn
         if (CollectionUtils.isNotEmpty(duplicateUpdateColumns)) {
             EqualsTo equalsTo = new EqualsTo();
             equalsTo.setLeftExpression(new StringValue(tenantLineHandler.getTenantIdColumn()));
-            equalsTo.setRightExpression(tenantLineHandler.getTenantId());
+            equalsTo.setRightExpression(tenantIdExpression());
             duplicateUpdateColumns.add(equalsTo);
         }
 
@@ -138,15 +374,21 @@ public class TenantLineInnerInterceptor extends JsqlParserSupport implements Inn
             // fixed github pull/295
             ItemsList itemsList = insert.getItemsList();
             if (itemsList instanceof MultiExpressionList) {
-                ((MultiExpressionList) itemsList).getExprList().forEach(el -> el.getExpressions().add(tenantLineHandler.getTenantId()));
+                ((MultiExpressionList) itemsList).getExprList().forEach(el -> el.getExpressions().add(tenantIdExpression()));
             } else {
-                ((ExpressionList) itemsList).getExpressions().add(tenantLineHandler.getTenantId());
+                ((ExpressionList) itemsList).getExpressions().add(tenantIdExpression());
             }
         } else {
             throw ExceptionUtils.mpe("Failed to process multiple-table update, please exclude the tableName or statementId");
         }
     }
 
+    @Override
+    protected Object getSqlCacheKey(String sql, Object obj) {
+        // 参数化后改写结果与租户 ID 无关
+        return tenantIdAsParameter ? TENANT_ID_PARAMETER : tenantLineHandler.getCacheKey();
+    }
+
     /**
      * update 语句处理
      */
@@ -179,7 +421,7 @@ public class TenantLineInnerInterceptor extends JsqlParserSupport implements Inn
         //获得where条件表达式
         EqualsTo equalsTo = new EqualsTo();
         equalsTo.setLeftExpression(this.getAliasColumn(table));
-        equalsTo.setRightExpression(tenantLineHandler.getTenantId());
+        equalsTo.setRightExpression(tenantIdExpression());
         if (null != where) {
             if (where instanceof OrExpression) {
                 return new AndExpression(equalsTo, new Parenthesis(where));
@@ -394,7 +636,7 @@ public class TenantLineInnerInterceptor extends JsqlParserSupport implements Inn
     protected Expression builderExpression(Expression currentExpression, Table table) {
         EqualsTo equalsTo = new EqualsTo();
         equalsTo.setLeftExpression(this.getAliasColumn(table));
-        equalsTo.setRightExpression(tenantLineHandler.getTenantId());
+        equalsTo.setRightExpression(tenantIdExpression());
         if (currentExpression == null) {
             return equalsTo;
         }
@@ -424,7 +666,9 @@ public class TenantLineInnerInterceptor extends JsqlParserSupport implements Inn
     @Override
     public void setProperties(Properties properties) {
         PropertyMapper.newInstance(properties)
-            .whenNotBlack("tenantLineHandler", ClassUtils::newInstance, this::setTenantLineHandler);
+            .whenNotBlack("tenantLineHandler", ClassUtils::newInstance, this::setTenantLineHandler)
+            .whenNotBlack("tenantIdAsParameter", Boolean::parseBoolean, this::setTenantIdAsParameter)
+            .whenNotBlack("fastRewrite", Boolean::parseBoolean, this::setFastRewrite);
     }
 }
 
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.plugins.metrics;
+
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+
+/**
+ * inner 插件执行耗时记录器
+ * <p>
+ * 设置到 {@link com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor#setRecorder(InnerInterceptorRecorder)} 后,
+ * 每次调用 inner 插件的方法都会回调 {@link #record(InnerInterceptor, String, Phase, long)}, 实现需要是线程安全的
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public interface InnerInterceptorRecorder {
+
+    /**
+     * 记录一次调用
+     *
+     * @param interceptor inner 插件
+     * @param msId        MappedStatement id
+     * @param phase       调用的方法
+     * @param nanos       耗时(纳秒)
+     */
+    void record(InnerInterceptor interceptor, String msId, Phase phase, long nanos);
+
+    /**
+     * inner 插件被调用的方法
+     */
+    enum Phase {
+        WILL_DO_QUERY,
+        BEFORE_QUERY,
+        AFTER_QUERY,
+        WILL_DO_UPDATE,
+        BEFORE_UPDATE,
+        BEFORE_PREPARE,
+        BEFORE_GET_BOUND_SQL
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.plugins.metrics;
+
+import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内存中的 {@link InnerInterceptorRecorder}
+ * <p>
+ * 按 插件 + MappedStatement id + 方法 汇总调用次数、总耗时、最大耗时, 分位数按 2 的幂次分桶估算(取桶上界)
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public class MemoryInnerInterceptorRecorder implements InnerInterceptorRecorder {
+
+    private final Map<Key, Metric> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(InnerInterceptor interceptor, String msId, Phase phase, long nanos) {
+        CollectionUtils.computeIfAbsent(metrics, new Key(interceptor.getClass().getName(), msId, phase), k -> new Metric())
+            .record(nanos);
+    }
+
+    /**
+     * @return 当前统计快照
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> list = new ArrayList<>(metrics.size());
+        metrics.forEach((k, v) -> list.add(v.snapshot(k)));
+        return list;
+    }
+
+    public void reset() {
+        metrics.clear();
+    }
+
+    /**
+     * 统计快照
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Snapshot {
+
+        /**
+         * 插件类名
+         */
+        private final String interceptor;
+
+        private final String msId;
+
+        private final Phase phase;
+
+        private final long count;
+
+        private final long totalNanos;
+
+        private final long maxNanos;
+
+        private final long p50Nanos;
+
+        private final long p90Nanos;
+
+        private final long p99Nanos;
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class Key {
+
+        private final String interceptor;
+
+        private final String msId;
+
+        private final Phase phase;
+    }
+
+    private static final class Metric {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        /**
+         * 下标 i 的桶记录耗时在 [2^(i-1), 2^i) 纳秒内的次数
+         */
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            count.increment();
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+        }
+
+        Snapshot snapshot(Key key) {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long max = maxNanos.get();
+            return new Snapshot(key.getInterceptor(), key.getMsId(), key.getPhase(), count.sum(), totalNanos.sum(), max,
+                percentile(counts, total, 0.5, max), percentile(counts, total, 0.9, max), percentile(counts, total, 0.99, max));
+        }
+
+        private long percentile(long[] counts, long total, double percent, long max) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percent);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i == 0 ? 0 : Math.min(i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1, max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.plugins.pagination;
+
+import com.baomidou.mybatisplus.core.toolkit.Assert;
+import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
+import com.baomidou.mybatisplus.core.toolkit.StringPool;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.Statements;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 分页 count 结果缓存(LRU)
+ * <p>
+ * key 一般为 count 查询的 {@link org.apache.ibatis.cache.CacheKey}(包含 sql 和参数值),
+ * 在以下情况失效:
+ * <ul>
+ * <li>超过 ttl</li>
+ * <li>count sql 涉及的任意一张表执行过 insert/update/delete, 见 {@link #beginWrite(Object, String)}</li>
+ * </ul>
+ * </p>
+ * <p>
+ * 写操作开始时以及所在事务结束(提交或回滚)后各失效一次, 事务结束前涉及这些表的 count 只查询不缓存,
+ * 避免缓存其他事务读到的旧数据或者写事务自己未提交的数据
+ * </p>
+ * <p>
+ * count 与写操作都按替换表名(例如动态表名)之前的原始 sql 解析表名, 写分表中的任意一张会使所有分表的缓存失效
+ * </p>
+ * <p>
+ * 只能感知经过本应用 MybatisPlusInterceptor 的写操作, 其他途径的写入依靠 ttl 兜底
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public class CountCache {
+
+    private static final Log logger = LogFactory.getLog(CountCache.class);
+    private static final String[] UNKNOWN_TABLES = new String[0];
+    /**
+     * 无法解析出表名的写操作, 视为写了所有表
+     */
+    private static final String ALL_TABLES = "*";
+    private static final boolean SPRING_TX = isPresent("org.springframework.transaction.support.TransactionSynchronizationManager");
+
+    private final int maximumSize;
+    private final long ttlMillis;
+    private final Map<Object, Entry> cache;
+    /**
+     * 表名 -> 版本号, 表被写入时递增
+     */
+    private final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    /**
+     * 表名 -> 未结束的写事务数
+     */
+    private final Map<String, AtomicInteger> pendingWrites = new ConcurrentHashMap<>();
+    /**
+     * 事务 -> 该事务写过的表名, 不使用 spring 事务同步时使用
+     */
+    private final Map<Object, Set<String>> writeScopes = new ConcurrentHashMap<>();
+    /**
+     * 写操作 sql -> 涉及的表名
+     */
+    private final Map<String, String[]> sqlTables = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+            return size() > 1024;
+        }
+    };
+    /**
+     * 无法解析出表名的写操作递增, 使全部缓存失效
+     */
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    /**
+     * @param maximumSize 最大缓存条数
+     * @param ttlMillis   过期时间(毫秒)
+     */
+    public CountCache(int maximumSize, long ttlMillis) {
+        Assert.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+        Assert.isTrue(ttlMillis > 0, "ttlMillis must be greater than 0");
+        this.maximumSize = maximumSize;
+        this.ttlMillis = ttlMillis;
+        this.cache = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                return size() > CountCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * 获取 count 结果, 未命中或已失效时调用 loader 查询并缓存
+     *
+     * @param key    缓存 key
+     * @param sql    用于解析涉及的表的 sql, 应与写操作一样是表名替换(例如动态表名)之前的 sql, 只在需要时获取
+     * @param loader 查询 count
+     * @return count
+     * @throws SQLException 查询异常
+     */
+    public long get(Object key, Supplier<String> sql, Loader loader) throws SQLException {
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null && entry.isValid(this)) {
+            hitCount.increment();
+            return entry.total;
+        }
+        missCount.increment();
+        String[] tables = entry != null ? entry.tables : tables(sql.get());
+        if (tables == null) {
+            return loader.load();
+        }
+        // 先取版本号再检查未结束的写事务, 之后开始的写操作会使本次结果失效
+        long global = globalVersion.get();
+        long[] versions = versions(tables);
+        if (isWriting(tables)) {
+            return loader.load();
+        }
+        long total = loader.load();
+        synchronized (cache) {
+            cache.put(key, new Entry(tables, versions, global, System.currentTimeMillis() + ttlMillis, total));
+        }
+        return total;
+    }
+
+    /**
+     * 写操作开始: 使涉及的表的缓存失效, 并且在所在事务结束前不再缓存涉及这些表的 count
+     * <p>
+     * 存在 spring 事务同步时在 spring 事务结束后自动结束, 否则需要在事务结束后调用 {@link #endWrite(Object)}
+     * </p>
+     *
+     * @param transaction 写操作所在的事务
+     * @param sql         写操作的 sql
+     */
+    public void beginWrite(Object transaction, String sql) {
+        String[] tables = writeTables(sql);
+        Collection<String> names = tables == null ? Collections.singletonList(ALL_TABLES) : Arrays.asList(tables);
+        Set<String> scope = SPRING_TX && SpringTransactions.isActive() ? SpringTransactions.scope(this)
+            : CollectionUtils.computeIfAbsent(writeScopes, transaction, k -> new HashSet<>());
+        for (String table : names) {
+            if (scope.add(table)) {
+                CollectionUtils.computeIfAbsent(pendingWrites, table, k -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+        invalidate(tables == null ? null : names);
+    }
+
+    /**
+     * 事务结束(提交, 回滚或关闭), 再次使该事务写过的表的缓存失效
+     *
+     * @param transaction 事务
+     */
+    public void endWrite(Object transaction) {
+        Set<String> scope = writeScopes.remove(transaction);
+        if (scope != null) {
+            release(scope);
+        }
+    }
+
+    private void release(Set<String> scope) {
+        // 先减计数再失效, 与 get 中的顺序相反
+        for (String table : scope) {
+            pendingWrites.get(table).decrementAndGet();
+        }
+        invalidate(scope.contains(ALL_TABLES) ? null : scope);
+    }
+
+    private boolean isWriting(String[] tables) {
+        if (pendingWrites.isEmpty()) {
+            return false;
+        }
+        if (isPending(ALL_TABLES)) {
+            return true;
+        }
+        for (String table : tables) {
+            if (isPending(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPending(String table) {
+        AtomicInteger count = pendingWrites.get(table);
+        return count != null && count.get() > 0;
+    }
+
+    /**
+     * 写操作 sql 涉及的表名, 按 sql 缓存
+     */
+    private String[] writeTables(String sql) {
+        String[] tables;
+        synchronized (sqlTables) {
+            tables = sqlTables.get(sql);
+        }
+        if (tables == null) {
+            String[] found = tables(sql);
+            tables = found == null ? UNKNOWN_TABLES : found;
+            synchronized (sqlTables) {
+                sqlTables.put(sql, tables);
+            }
+        }
+        return tables == UNKNOWN_TABLES ? null : tables;
+    }
+
+    /**
+     * 使涉及这些表的缓存失效
+     *
+     * @param tables 表名, 为 null 时全部失效
+     */
+    public void invalidate(Collection<String> tables) {
+        invalidationCount.increment();
+        if (tables == null) {
+            globalVersion.incrementAndGet();
+            return;
+        }
+        for (String table : tables) {
+            CollectionUtils.computeIfAbsent(tableVersions, normalize(table), k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * 解析 sql 涉及的表名
+     *
+     * @param sql sql
+     * @return 表名, 无法解析时返回 null
+     */
+    public static String[] tables(String sql) {
+        try {
+            Statements statements = CCJSqlParserUtil.parseStatements(sql);
+            Set<String> tables = new HashSet<>();
+            for (Statement statement : statements.getStatements()) {
+                for (String table : new TablesNamesFinder().getTableList(statement)) {
+                    tables.add(normalize(table));
+                }
+            }
+            return tables.toArray(new String[0]);
+        } catch (JSQLParserException e) {
+            logger.warn("failed to find tables of sql: \"" + sql + "\", exception:\n" + e.getCause());
+        } catch (Exception e) {
+            logger.warn("failed to find tables of sql: \"" + sql + "\", exception:\n" + e);
+        }
+        return null;
+    }
+
+    /**
+     * 去掉 schema 和引号并转为小写, 宁可多失效也不漏掉
+     */
+    private static String normalize(String table) {
+        int index = table.lastIndexOf(StringPool.DOT);
+        String name = index < 0 ? table : table.substring(index + 1);
+        char first = name.isEmpty() ? ' ' : name.charAt(0);
+        if (first == '`' || first == '"' || first == '[') {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    private long[] versions(String[] tables) {
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            versions[i] = CollectionUtils.computeIfAbsent(tableVersions, tables[i], k -> new AtomicLong()).get();
+        }
+        return versions;
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Resources.classForName(className);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * @return 当前统计快照
+     */
+    public Stats stats() {
+        return new Stats(hitCount.sum(), missCount.sum(), invalidationCount.sum(), size());
+    }
+
+    /**
+     * count 查询
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        long load() throws SQLException;
+    }
+
+    /**
+     * 缓存统计
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final long hitCount;
+
+        private final long missCount;
+
+        private final long invalidationCount;
+
+        private final int size;
+
+        public double hitRate() {
+            long total = hitCount + missCount;
+            return total == 0 ? 1.0 : (double) hitCount / total;
+        }
+    }
+
+    /**
+     * spring 事务同步, 单独放一个类避免没有 spring 时加载失败
+     */
+    private static final class SpringTransactions {
+
+        static boolean isActive() {
+            return TransactionSynchronizationManager.isSynchronizationActive();
+        }
+
+        /**
+         * 当前 spring 事务写过的表, 第一次写时注册事务结束的回调
+         */
+        @SuppressWarnings("unchecked")
+        static Set<String> scope(CountCache cache) {
+            Set<String> scope = (Set<String>) TransactionSynchronizationManager.getResource(cache);
+            if (scope == null) {
+                Set<String> created = new HashSet<>();
+                TransactionSynchronizationManager.bindResource(cache, created);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(cache);
+                        cache.release(created);
+                    }
+                });
+                scope = created;
+            }
+            return scope;
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Entry {
+
+        private final String[] tables;
+        private final long[] versions;
+        private final long globalVersion;
+        private final long expireAt;
+        private final long total;
+
+        boolean isValid(CountCache cache) {
+            if (System.currentTimeMillis() > expireAt || globalVersion != cache.globalVersion.get()) {
+                return false;
+            }
+            for (int i = 0; i < tables.length; i++) {
+                AtomicLong version = cache.tableVersions.get(tables[i]);
+                if (version == null || version.get() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
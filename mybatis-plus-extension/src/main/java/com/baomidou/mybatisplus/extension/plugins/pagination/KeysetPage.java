@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.plugins.pagination;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.metadata.OrderItem;
+import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 游标(keyset)分页模型
+ * <p>
+ * 不使用 offset, 而是以上一页最后一条记录的排序键值作为游标,
+ * 由分页插件改写为 {@code WHERE (a, b) > (?, ?) ORDER BY a, b LIMIT ?},
+ * 翻到多深的页耗时都一样
+ * </p>
+ * <p>
+ * 排序键由 {@link #orders()} 决定, 组合起来必须唯一(一般最后一个为主键)且不能为 null,
+ * 游标值与 orders 一一对应
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public class KeysetPage<T> extends Page<T> {
+
+    private static final long serialVersionUID = -3251537469306617544L;
+
+    /**
+     * 从记录中取出排序键值
+     */
+    private transient Function<? super T, Object[]> keyMapper;
+    /**
+     * 上一页最后一条记录的排序键值(本次查询的游标), 为 null 表示第一页
+     */
+    private List<Object> lastKeys;
+    /**
+     * 本页最后一条记录的排序键值(下一次查询的游标), 没有下一页时为 null
+     */
+    private List<Object> nextKeys;
+
+    public KeysetPage() {
+        this.searchCount = false;
+    }
+
+    /**
+     * @param size 每页显示条数
+     */
+    public KeysetPage(long size) {
+        this(size, null);
+    }
+
+    /**
+     * @param size      每页显示条数
+     * @param keyMapper 从记录中取出排序键值, 用于计算 {@link #getNextKeys()}
+     */
+    public KeysetPage(long size, Function<? super T, Object[]> keyMapper) {
+        super(1, size, false);
+        this.keyMapper = keyMapper;
+    }
+
+    /**
+     * 设置游标
+     *
+     * @param keys 上一页最后一条记录的排序键值, 与 orders 一一对应
+     * @return this
+     */
+    public KeysetPage<T> after(Object... keys) {
+        return setLastKeys(keys == null ? null : Arrays.asList(keys));
+    }
+
+    public List<Object> getLastKeys() {
+        return lastKeys;
+    }
+
+    public KeysetPage<T> setLastKeys(List<Object> lastKeys) {
+        this.lastKeys = CollectionUtils.isEmpty(lastKeys) ? null : lastKeys;
+        return this;
+    }
+
+    public List<Object> getNextKeys() {
+        return nextKeys;
+    }
+
+    public KeysetPage<T> setNextKeys(List<Object> nextKeys) {
+        this.nextKeys = nextKeys;
+        return this;
+    }
+
+    public KeysetPage<T> setKeyMapper(Function<? super T, Object[]> keyMapper) {
+        this.keyMapper = keyMapper;
+        return this;
+    }
+
+    /**
+     * 从当前页的记录生成下一页
+     *
+     * @return 下一页, 没有下一页时返回 null
+     */
+    public KeysetPage<T> next() {
+        if (nextKeys == null) {
+            return null;
+        }
+        KeysetPage<T> next = new KeysetPage<>(size, keyMapper);
+        next.orders = orders;
+        next.maxLimit = maxLimit;
+        next.lastKeys = nextKeys;
+        return next;
+    }
+
+    /**
+     * 设置记录, 同时根据最后一条记录计算下一页的游标
+     * <p>
+     * 记录数不满一页说明没有下一页
+     * </p>
+     */
+    @Override
+    public KeysetPage<T> setRecords(List<T> records) {
+        super.setRecords(records);
+        if (keyMapper != null) {
+            if (CollectionUtils.isEmpty(records) || (size > 0 && records.size() < size)) {
+                this.nextKeys = null;
+            } else {
+                this.nextKeys = Arrays.asList(keyMapper.apply(records.get(records.size() - 1)));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 转换后的记录不再经过 keyMapper
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R> IPage<R> convert(Function<? super T, ? extends R> mapper) {
+        List<R> collect = this.getRecords().stream().map(mapper).collect(Collectors.toList());
+        this.records = (List<T>) collect;
+        return (IPage<R>) this;
+    }
+
+    @Override
+    public KeysetPage<T> addOrder(OrderItem... items) {
+        super.addOrder(items);
+        return this;
+    }
+
+    @Override
+    public KeysetPage<T> addOrder(List<OrderItem> items) {
+        super.addOrder(items);
+        return this;
+    }
+
+    /**
+     * 是否存在下一页, 未设置 keyMapper 时总是 false
+     */
+    @Override
+    public boolean hasNext() {
+        return nextKeys != null;
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return lastKeys != null;
+    }
+
+    /**
+     * 游标分页不使用 offset
+     */
+    @Override
+    public long offset() {
+        return 0;
+    }
+}
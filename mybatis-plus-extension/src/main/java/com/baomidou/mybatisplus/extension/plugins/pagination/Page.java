@@ -78,6 +78,27 @@ public class Page<T> implements IPage<T> {
      */
     @Setter
     protected Long maxLimit;
+    /**
+     * 估算总数
+     */
+    protected boolean estimateCount;
+    /**
+     * count 上限
+     */
+    @Setter
+    protected Long countLimit;
+    /**
+     * 总数是否为精确值
+     */
+    protected boolean totalExact = true;
+    /**
+     * 多查一条判断是否有下一页, 不进行 count 查询
+     */
+    protected boolean searchHasNext;
+    /**
+     * 是否有下一页, searchHasNext 为 true 时由分页插件设置
+     */
+    protected boolean hasNext;
 
     public Page() {
     }
@@ -124,9 +145,18 @@ public class Page<T> implements IPage<T> {
      * @return true / false
      */
     public boolean hasNext() {
+        if (this.searchHasNext) {
+            return this.hasNext;
+        }
         return this.current < this.getPages();
     }
 
+    @Override
+    public Page<T> setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+        return this;
+    }
+
     @Override
     public List<T> getRecords() {
         return this.records;
@@ -255,6 +285,42 @@ public class Page<T> implements IPage<T> {
         return this;
     }
 
+    @Override
+    public boolean estimateCount() {
+        return estimateCount;
+    }
+
+    public Page<T> setEstimateCount(boolean estimateCount) {
+        this.estimateCount = estimateCount;
+        return this;
+    }
+
+    @Override
+    public Long countLimit() {
+        return countLimit;
+    }
+
+    @Override
+    public boolean totalExact() {
+        return totalExact;
+    }
+
+    @Override
+    public Page<T> setTotalExact(boolean totalExact) {
+        this.totalExact = totalExact;
+        return this;
+    }
+
+    @Override
+    public boolean searchHasNext() {
+        return searchHasNext;
+    }
+
+    public Page<T> setSearchHasNext(boolean searchHasNext) {
+        this.searchHasNext = searchHasNext;
+        return this;
+    }
+
     public Page<T> setOptimizeCountSql(boolean optimizeCountSql) {
         this.optimizeCountSql = optimizeCountSql;
         return this;
@@ -17,6 +17,10 @@ package com.baomidou.mybatisplus.extension.plugins.pagination.dialects;
 
 import com.baomidou.mybatisplus.core.toolkit.StringPool;
 import com.baomidou.mybatisplus.extension.plugins.pagination.DialectModel;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
 
 /**
  * 数据库 分页语句组装接口
@@ -41,4 +45,31 @@ public interface IDialect {
      * @return 分页模型
      */
     DialectModel buildPaginationSql(String originalSql, long offset, long limit);
+
+    /**
+     * 是否支持行值比较, 例如 {@code (a, b) > (?, ?)}
+     * <p>
+     * 游标分页时使用, 不支持的改为展开成 {@code a > ? OR (a = ? AND b > ?)}
+     * </p>
+     *
+     * @return 是否支持
+     * @since 3.4.3
+     */
+    default boolean supportRowValueComparison() {
+        return false;
+    }
+
+    /**
+     * 根据执行计划估算查询结果行数
+     *
+     * @param connection       Connection
+     * @param originalSql      原始语句
+     * @param parameterHandler 原始语句的参数设置
+     * @return 估算行数, 不支持时返回 null
+     * @throws SQLException 执行异常
+     * @since 3.4.3
+     */
+    default Long estimateCount(Connection connection, String originalSql, ParameterHandler parameterHandler) throws SQLException {
+        return null;
+    }
 }
@@ -17,6 +17,13 @@ package com.baomidou.mybatisplus.extension.plugins.pagination.dialects;
 
 import com.baomidou.mybatisplus.core.toolkit.StringPool;
 import com.baomidou.mybatisplus.extension.plugins.pagination.DialectModel;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 
 /**
  * MYSQL 数据库分页语句组装实现
@@ -36,4 +43,46 @@ public class MySqlDialect implements IDialect {
             return new DialectModel(sql.toString(), limit).setConsumer(true);
         }
     }
+
+    @Override
+    public boolean supportRowValueComparison() {
+        return true;
+    }
+
+    /**
+     * EXPLAIN 中同一个 id 的各表 rows * filtered 的乘积
+     */
+    @Override
+    public Long estimateCount(Connection connection, String originalSql, ParameterHandler parameterHandler) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + originalSql)) {
+            parameterHandler.setParameters(statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                // 5.7 之前的 EXPLAIN 没有 filtered
+                int filteredIndex = 0;
+                ResultSetMetaData metaData = rs.getMetaData();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    if ("filtered".equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                        filteredIndex = i;
+                    }
+                }
+                double rows = 1;
+                String firstId = null;
+                while (rs.next()) {
+                    String id = rs.getString("id");
+                    if (firstId == null) {
+                        firstId = id;
+                    } else if (!firstId.equals(id)) {
+                        break;
+                    }
+                    long tableRows = rs.getLong("rows");
+                    if (rs.wasNull()) {
+                        continue;
+                    }
+                    double filtered = filteredIndex > 0 ? rs.getDouble(filteredIndex) : 100;
+                    rows *= tableRows * (filtered > 0 ? filtered : 100) / 100;
+                }
+                return firstId == null ? null : (long) Math.ceil(rows);
+            }
+        }
+    }
 }
@@ -16,6 +16,10 @@
 package com.baomidou.mybatisplus.extension.plugins.pagination.dialects;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.DialectModel;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
 
 /**
  * ORACLE 新版数据库分页语句组装实现
@@ -30,4 +34,9 @@ public class Oracle12cDialect implements IDialect {
         String sql = originalSql + " OFFSET " + FIRST_MARK + " ROWS FETCH NEXT " + SECOND_MARK + " ROWS ONLY";
         return new DialectModel(sql, offset, limit).setConsumerChain();
     }
+
+    @Override
+    public Long estimateCount(Connection connection, String originalSql, ParameterHandler parameterHandler) throws SQLException {
+        return OracleDialect.explainCardinality(connection, originalSql);
+    }
 }
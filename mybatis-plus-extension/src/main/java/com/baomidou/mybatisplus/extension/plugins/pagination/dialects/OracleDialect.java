@@ -16,6 +16,13 @@
 package com.baomidou.mybatisplus.extension.plugins.pagination.dialects;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.DialectModel;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
  * ORACLE 数据库分页语句组装实现
@@ -33,4 +40,65 @@ public class OracleDialect implements IDialect {
             originalSql + " ) TMP WHERE ROWNUM <=" + FIRST_MARK + ") WHERE ROW_ID > " + SECOND_MARK;
         return new DialectModel(sql, limit, offset).setConsumerChain();
     }
+
+    @Override
+    public Long estimateCount(Connection connection, String originalSql, ParameterHandler parameterHandler) throws SQLException {
+        return explainCardinality(connection, originalSql);
+    }
+
+    /**
+     * EXPLAIN PLAN 根节点的 CARDINALITY
+     * <p>
+     * EXPLAIN PLAN 不执行也不窥探绑定变量, 所以不设置参数;
+     * 驱动在 PreparedStatement 执行前会校验每个 ? 都已赋值, 因此把 ? 换成 :1, :2 ... 形式的绑定变量后用 Statement 执行
+     * </p>
+     * <p>
+     * 结果写入 PLAN_TABLE, 在事务中时由调用方用保存点回滚
+     * </p>
+     */
+    static Long explainCardinality(Connection connection, String originalSql) throws SQLException {
+        String statementId = "MP" + Long.toHexString(System.nanoTime());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("EXPLAIN PLAN SET STATEMENT_ID = '" + statementId + "' FOR " + numberedBinds(originalSql));
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT CARDINALITY FROM PLAN_TABLE WHERE STATEMENT_ID = ? AND ID = 0")) {
+            statement.setString(1, statementId);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    long rows = rs.getLong(1);
+                    return rs.wasNull() ? null : rows;
+                }
+                return null;
+            }
+        } finally {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM PLAN_TABLE WHERE STATEMENT_ID = ?")) {
+                statement.setString(1, statementId);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * 把 jdbc 的 ? 占位符换成 oracle 的 :1, :2 ... 绑定变量, 引号中的 ? 保持不变
+     */
+    static String numberedBinds(String sql) {
+        StringBuilder builder = new StringBuilder(sql.length() + 16);
+        int index = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '?') {
+                builder.append(':').append(++index);
+                continue;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
 }
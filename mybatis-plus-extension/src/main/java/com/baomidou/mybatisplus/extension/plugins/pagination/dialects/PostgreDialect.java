@@ -16,6 +16,14 @@
 package com.baomidou.mybatisplus.extension.plugins.pagination.dialects;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.DialectModel;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Postgre 数据库分页语句组装实现
@@ -25,6 +33,8 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.DialectModel;
  */
 public class PostgreDialect implements IDialect {
 
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
     @Override
     public DialectModel buildPaginationSql(String originalSql, long offset, long limit) {
         StringBuilder sql = new StringBuilder(originalSql).append(" LIMIT ").append(FIRST_MARK);
@@ -35,4 +45,28 @@ public class PostgreDialect implements IDialect {
             return new DialectModel(sql.toString(), limit).setConsumer(true);
         }
     }
+
+    @Override
+    public boolean supportRowValueComparison() {
+        return true;
+    }
+
+    /**
+     * EXPLAIN 第一行(根节点)的 rows
+     */
+    @Override
+    public Long estimateCount(Connection connection, String originalSql, ParameterHandler parameterHandler) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + originalSql)) {
+            parameterHandler.setParameters(statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    Matcher matcher = PLAN_ROWS.matcher(rs.getString(1));
+                    if (matcher.find()) {
+                        return Long.parseLong(matcher.group(1));
+                    }
+                }
+                return null;
+            }
+        }
+    }
 }
@@ -29,11 +29,14 @@ import com.baomidou.mybatisplus.extension.conditions.update.LambdaUpdateChainWra
 import com.baomidou.mybatisplus.extension.conditions.update.UpdateChainWrapper;
 import com.baomidou.mybatisplus.extension.kotlin.KtQueryChainWrapper;
 import com.baomidou.mybatisplus.extension.kotlin.KtUpdateChainWrapper;
+import com.baomidou.mybatisplus.extension.toolkit.BulkIngest;
+import com.baomidou.mybatisplus.extension.toolkit.BulkLoader;
 import com.baomidou.mybatisplus.extension.toolkit.ChainWrappers;
 import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +57,13 @@ public interface IService<T> {
      */
     int DEFAULT_BATCH_SIZE = 1000;
 
+    /**
+     * 根据ID 批量查询/删除时每条 sql in 列表的默认最大长度（oracle in 列表上限）
+     *
+     * @since 3.4.3
+     */
+    int DEFAULT_ID_CHUNK_SIZE = 1000;
+
     /**
      * 插入一条记录（选择字段，策略插入）
      *
@@ -81,6 +91,34 @@ public interface IService<T> {
      */
     boolean saveBatch(Collection<T> entityList, int batchSize);
 
+    /**
+     * 插入（批量，一条 insert 语句插入多行）
+     * <p>
+     * 所有字段都会写入, 实体中为 null 的字段插入后是 null 而不是数据库默认值;
+     * 需要启动时注册 {@link com.baomidou.mybatisplus.extension.injector.BatchSqlInjector}
+     * </p>
+     *
+     * @param entityList 实体对象集合
+     * @since 3.4.3
+     */
+    @Transactional(rollbackFor = Exception.class)
+    default boolean saveBatchValues(Collection<T> entityList) {
+        return saveBatchValues(entityList, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 插入（批量，一条 insert 语句插入多行）
+     * <p>
+     * 所有字段都会写入, 实体中为 null 的字段插入后是 null 而不是数据库默认值;
+     * 需要启动时注册 {@link com.baomidou.mybatisplus.extension.injector.BatchSqlInjector}
+     * </p>
+     *
+     * @param entityList 实体对象集合
+     * @param batchSize  每条语句最多插入的行数, 还会按数据库的参数个数上限拆分
+     * @since 3.4.3
+     */
+    boolean saveBatchValues(Collection<T> entityList, int batchSize);
+
     /**
      * 批量修改插入
      *
@@ -99,6 +137,68 @@ public interface IService<T> {
      */
     boolean saveOrUpdateBatch(Collection<T> entityList, int batchSize);
 
+    /**
+     * 批量修改插入（数据库原生 upsert，一条语句处理多行，不需要先查询）
+     * <p>
+     * 查看 {@link com.baomidou.mybatisplus.extension.injector.methods.UpsertBatch},
+     * 需要启动时注册 {@link com.baomidou.mybatisplus.extension.injector.BatchSqlInjector} 并指定数据库类型
+     * </p>
+     * <p>
+     * 注意: 原生 upsert 会把实体中为 null 的字段写成 null; 不支持原生 upsert 的数据库退化为 {@link #saveOrUpdateBatch(Collection, int)},
+     * 按字段策略更新(默认 NOT_NULL, 不更新为 null 的字段), 两者结果不同
+     * </p>
+     *
+     * @param entityList 实体对象集合
+     * @since 3.4.3
+     */
+    @Transactional(rollbackFor = Exception.class)
+    default boolean upsertBatch(Collection<T> entityList) {
+        return upsertBatch(entityList, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 批量修改插入（数据库原生 upsert，一条语句处理多行，不需要先查询）
+     * <p>
+     * 查看 {@link com.baomidou.mybatisplus.extension.injector.methods.UpsertBatch},
+     * 需要启动时注册 {@link com.baomidou.mybatisplus.extension.injector.BatchSqlInjector} 并指定数据库类型
+     * </p>
+     * <p>
+     * 注意: 原生 upsert 会把实体中为 null 的字段写成 null; 不支持原生 upsert 的数据库退化为 {@link #saveOrUpdateBatch(Collection, int)},
+     * 按字段策略更新(默认 NOT_NULL, 不更新为 null 的字段), 两者结果不同
+     * </p>
+     *
+     * @param entityList 实体对象集合
+     * @param batchSize  每条语句最多处理的行数, 还会按数据库的参数个数上限拆分
+     * @since 3.4.3
+     */
+    boolean upsertBatch(Collection<T> entityList, int batchSize);
+
+    /**
+     * 并行分区批量导入（非事务，各分区单独提交）
+     * <p>
+     * 查看 {@link BulkLoader}
+     * </p>
+     *
+     * @return BulkLoader
+     * @since 3.4.3
+     */
+    default BulkLoader<T> bulkLoader() {
+        return new BulkLoader<>(getEntityClass());
+    }
+
+    /**
+     * 使用数据库原生批量导入格式写入（postgresql COPY，mysql LOAD DATA，其他数据库 batch insert）
+     * <p>
+     * 查看 {@link BulkIngest}
+     * </p>
+     *
+     * @return BulkIngest
+     * @since 3.4.3
+     */
+    default BulkIngest<T> bulkIngest() {
+        return new BulkIngest<>(getEntityClass());
+    }
+
     /**
      * 根据 ID 删除
      *
@@ -133,10 +233,25 @@ public interface IService<T> {
      * @param idList 主键ID列表
      */
     default boolean removeByIds(Collection<? extends Serializable> idList) {
+        return removeByIds(idList, DEFAULT_ID_CHUNK_SIZE);
+    }
+
+    /**
+     * 删除（根据ID 批量删除，按 chunkSize 分块执行）
+     * <p>
+     * 查看 {@link SqlHelper#deleteBatchIds(BaseMapper, Collection, int)}
+     * </p>
+     *
+     * @param idList    主键ID列表
+     * @param chunkSize 每条 sql in 列表的最大长度
+     * @since 3.4.3
+     */
+    @Transactional(rollbackFor = Exception.class)
+    default boolean removeByIds(Collection<? extends Serializable> idList, int chunkSize) {
         if (CollectionUtils.isEmpty(idList)) {
             return false;
         }
-        return SqlHelper.retBool(getBaseMapper().deleteBatchIds(idList));
+        return SqlHelper.retBool(SqlHelper.deleteBatchIds(getBaseMapper(), idList, chunkSize));
     }
 
     /**
@@ -185,6 +300,30 @@ public interface IService<T> {
      */
     boolean updateBatchById(Collection<T> entityList, int batchSize);
 
+    /**
+     * 根据ID 批量更新所有字段（逻辑删除字段除外，实体中为 null 的字段也会更新为 null）
+     * <p>
+     * 所有数据都是同一条 sql，能最大程度的合并为 JDBC batch；
+     * 需要启动时注册 {@link com.baomidou.mybatisplus.extension.injector.BatchSqlInjector}
+     * </p>
+     *
+     * @param entityList 实体对象集合
+     * @since 3.4.3
+     */
+    @Transactional(rollbackFor = Exception.class)
+    default boolean updateAllColumnBatchById(Collection<T> entityList) {
+        return updateAllColumnBatchById(entityList, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 根据ID 批量更新所有字段（逻辑删除字段除外，实体中为 null 的字段也会更新为 null）
+     *
+     * @param entityList 实体对象集合
+     * @param batchSize  更新批次数量
+     * @since 3.4.3
+     */
+    boolean updateAllColumnBatchById(Collection<T> entityList, int batchSize);
+
     /**
      * TableId 注解存在更新记录，否插入一条记录
      *
@@ -207,7 +346,24 @@ public interface IService<T> {
      * @param idList 主键ID列表
      */
     default List<T> listByIds(Collection<? extends Serializable> idList) {
-        return getBaseMapper().selectBatchIds(idList);
+        return listByIds(idList, DEFAULT_ID_CHUNK_SIZE);
+    }
+
+    /**
+     * 查询（根据ID 批量查询，按 chunkSize 分块执行后合并结果）
+     * <p>
+     * 查看 {@link SqlHelper#selectBatchIds(BaseMapper, Collection, int, java.util.concurrent.Executor)}
+     * </p>
+     *
+     * @param idList    主键ID列表
+     * @param chunkSize 每条 sql in 列表的最大长度
+     * @since 3.4.3
+     */
+    default List<T> listByIds(Collection<? extends Serializable> idList, int chunkSize) {
+        if (CollectionUtils.isEmpty(idList)) {
+            return new ArrayList<>();
+        }
+        return SqlHelper.selectBatchIds(getBaseMapper(), idList, chunkSize);
     }
 
     /**
@@ -23,7 +23,6 @@ import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.baomidou.mybatisplus.core.toolkit.*;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
-import org.apache.ibatis.binding.MapperMethod;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.session.SqlSession;
@@ -136,6 +135,20 @@ public class ServiceImpl<M extends BaseMapper<T>, T> implements IService<T> {
         return executeBatch(entityList, batchSize, (sqlSession, entity) -> sqlSession.insert(sqlStatement, entity));
     }
 
+    /**
+     * 批量插入(多行 values)
+     *
+     * @param entityList ignore
+     * @param batchSize  ignore
+     * @return ignore
+     * @since 3.4.3
+     */
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public boolean saveBatchValues(Collection<T> entityList, int batchSize) {
+        return SqlHelper.saveBatchValues(this.entityClass, this.mapperClass, this.log, entityList, batchSize);
+    }
+
     /**
      * 获取mapperStatementId
      *
@@ -170,30 +183,25 @@ public class ServiceImpl<M extends BaseMapper<T>, T> implements IService<T> {
     @Transactional(rollbackFor = Exception.class)
     @Override
     public boolean saveOrUpdateBatch(Collection<T> entityList, int batchSize) {
-        TableInfo tableInfo = TableInfoHelper.getTableInfo(entityClass);
-        Assert.notNull(tableInfo, "error: can not execute. because can not find cache of TableInfo for entity!");
-        String keyProperty = tableInfo.getKeyProperty();
-        Assert.notEmpty(keyProperty, "error: can not execute. because can not find column for id from entity!");
-        return SqlHelper.saveOrUpdateBatch(this.entityClass, this.mapperClass, this.log, entityList, batchSize, (sqlSession, entity) -> {
-            Object idVal = ReflectionKit.getFieldValue(entity, keyProperty);
-            return StringUtils.checkValNull(idVal)
-                || CollectionUtils.isEmpty(sqlSession.selectList(getSqlStatement(SqlMethod.SELECT_BY_ID), entity));
-        }, (sqlSession, entity) -> {
-            MapperMethod.ParamMap<T> param = new MapperMethod.ParamMap<>();
-            param.put(Constants.ENTITY, entity);
-            sqlSession.update(getSqlStatement(SqlMethod.UPDATE_BY_ID), param);
-        });
+        return SqlHelper.saveOrUpdateBatch(this.entityClass, this.mapperClass, this.log, entityList, batchSize);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public boolean upsertBatch(Collection<T> entityList, int batchSize) {
+        return SqlHelper.upsertBatch(this.entityClass, this.mapperClass, this.log, entityList, batchSize);
     }
 
     @Transactional(rollbackFor = Exception.class)
     @Override
     public boolean updateBatchById(Collection<T> entityList, int batchSize) {
-        String sqlStatement = getSqlStatement(SqlMethod.UPDATE_BY_ID);
-        return executeBatch(entityList, batchSize, (sqlSession, entity) -> {
-            MapperMethod.ParamMap<T> param = new MapperMethod.ParamMap<>();
-            param.put(Constants.ENTITY, entity);
-            sqlSession.update(sqlStatement, param);
-        });
+        return SqlHelper.updateBatchById(this.entityClass, this.mapperClass, this.log, entityList, batchSize);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public boolean updateAllColumnBatchById(Collection<T> entityList, int batchSize) {
+        return SqlHelper.updateAllColumnBatchById(this.entityClass, this.mapperClass, this.log, entityList, batchSize);
     }
 
     @Override
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.toolkit;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.core.MybatisParameterHandler;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.Assert;
+import com.baomidou.mybatisplus.core.toolkit.ClassUtils;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.core.toolkit.StringPool;
+import com.baomidou.mybatisplus.extension.service.IService;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 使用数据库原生批量导入格式写入数据
+ * <p>
+ * postgresql 使用 {@code COPY ... FROM STDIN}(驱动的 CopyManager), mysql/mariadb 使用 {@code LOAD DATA LOCAL INFILE}
+ * (需要连接参数 allowLoadLocalInfile=true), 数据从 {@link Iterator} 边读边编码写给驱动, 不会生成文件也不会全部放到内存;
+ * 其他数据库, 驱动不可用, 或者实体有不能编码的字段(自定义 typeHandler, 枚举, 序列主键等)时改用 batch insert
+ * </p>
+ * <p>
+ * 原生导入不经过 {@link com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor}, 实体的 insert 会被租户插件或动态表名插件改写时
+ * 同样改用 batch insert, 以免写入其他表或者缺少租户字段
+ * </p>
+ * <p>
+ * 注意: 原生导入会写入所有字段(null 也会写入, 不使用数据库默认值, 逻辑删除字段为 null 时写入未删除值), 自增主键不会回写到实体
+ * </p>
+ * <p>
+ * 注意: {@code LOAD DATA LOCAL} 会把主键冲突和类型转换错误降级为警告并跳过该行, 写入的行数与读取的行数不一致或者有警告时抛出异常,
+ * 在事务中(executeBatch)已写入的数据随之回滚
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+@Setter
+@Accessors(chain = true)
+public class BulkIngest<T> {
+
+    private static final Log LOG = LogFactory.getLog(BulkIngest.class);
+
+    private static final String[] MYSQL_STATEMENTS = {"com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement",
+        "org.mariadb.jdbc.MariaDbStatement"};
+
+    @Setter(lombok.AccessLevel.NONE)
+    private final Class<T> entityClass;
+    /**
+     * 改用 batch insert 时每批 flush 的条数
+     */
+    private int batchSize = IService.DEFAULT_BATCH_SIZE;
+    /**
+     * 是否使用原生导入, 为 false 时总是使用 batch insert
+     */
+    private boolean nativeIngest = true;
+
+    public BulkIngest(Class<T> entityClass) {
+        this.entityClass = entityClass;
+    }
+
+    /**
+     * 导入
+     *
+     * @param stream 数据
+     * @return 写入的行数
+     */
+    public long ingest(Stream<? extends T> stream) {
+        return ingest(stream.iterator());
+    }
+
+    /**
+     * 导入
+     *
+     * @param iterator 数据
+     * @return 写入的行数
+     */
+    public long ingest(Iterator<? extends T> iterator) {
+        Assert.isFalse(batchSize < 1, "batchSize must not be less than one");
+        TableInfo tableInfo = SqlHelper.table(entityClass);
+        String insertOne = SqlHelper.getSqlStatement(ClassUtils.toClassConfident(tableInfo.getCurrentNamespace()),
+            SqlMethod.INSERT_ONE);
+        AtomicLong rows = new AtomicLong();
+        SqlHelper.executeBatch(entityClass, LOG, sqlSession -> {
+            if (nativeIngest && ingestNative(sqlSession, tableInfo, insertOne, iterator, rows)) {
+                return;
+            }
+            int i = 0;
+            while (iterator.hasNext()) {
+                sqlSession.insert(insertOne, iterator.next());
+                if (++i % batchSize == 0) {
+                    sqlSession.flushStatements();
+                }
+            }
+            sqlSession.flushStatements();
+            rows.set(i);
+        });
+        return rows.get();
+    }
+
+    @SneakyThrows
+    private boolean ingestNative(SqlSession sqlSession, TableInfo tableInfo, String insertOne, Iterator<? extends T> iterator,
+                                 AtomicLong rows) {
+        DbType dbType = SqlHelper.getDbType(sqlSession);
+        BulkIngestEncoder encoder;
+        if (dbType == DbType.POSTGRE_SQL) {
+            encoder = BulkIngestEncoder.POSTGRE_SQL;
+        } else if (dbType == DbType.MYSQL || dbType == DbType.MARIADB) {
+            encoder = BulkIngestEncoder.MYSQL;
+        } else {
+            return false;
+        }
+        Map<String, String> columns = columns(tableInfo, encoder);
+        if (columns == null || SqlHelper.willRewriteInsert(sqlSession.getConfiguration(), tableInfo, insertOne)) {
+            return false;
+        }
+        String columnList = String.join(StringPool.COMMA, columns.values());
+        Collection<String> properties = columns.keySet();
+        Connection connection = sqlSession.getConnection();
+        if (encoder == BulkIngestEncoder.POSTGRE_SQL) {
+            Class<?> pgConnection = classForName("org.postgresql.PGConnection");
+            if (pgConnection == null || !connection.isWrapperFor(pgConnection)) {
+                return false;
+            }
+            Object copyManager = pgConnection.getMethod("getCopyAPI").invoke(connection.unwrap(pgConnection));
+            String sql = "COPY " + tableInfo.getTableName() + " (" + columnList + ") FROM STDIN";
+            LOG.debug("==>  Preparing: " + sql);
+            RowInputStream in = rowStream(sqlSession, tableInfo, insertOne, iterator, properties, encoder);
+            rows.set((Long) copyManager.getClass().getMethod("copyIn", String.class, InputStream.class)
+                .invoke(copyManager, sql, in));
+            checkRows(in.getRows(), rows.get(), null);
+            return true;
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String name : MYSQL_STATEMENTS) {
+                Class<?> clazz = classForName(name);
+                if (clazz != null && statement.isWrapperFor(clazz)) {
+                    RowInputStream in = rowStream(sqlSession, tableInfo, insertOne, iterator, properties, encoder);
+                    clazz.getMethod("setLocalInfileInputStream", InputStream.class).invoke(statement.unwrap(clazz), in);
+                    String sql = "LOAD DATA LOCAL INFILE 'mybatis-plus' INTO TABLE " + tableInfo.getTableName()
+                        + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' ("
+                        + columnList + StringPool.RIGHT_BRACKET;
+                    LOG.debug("==>  Preparing: " + sql);
+                    rows.set(statement.executeUpdate(sql));
+                    checkRows(in.getRows(), rows.get(), statement.getWarnings());
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 原生导入跳过的行不会报错, 按读取的行数和警告检查
+     */
+    static void checkRows(long sent, long written, SQLWarning warning) {
+        if (sent != written || warning != null) {
+            throw ExceptionUtils.mpe("bulk ingest wrote %d of %d rows%s", warning, written, sent,
+                warning == null ? StringPool.EMPTY : ", first warning: " + warning.getMessage());
+        }
+    }
+
+    /**
+     * 要写入的属性及其字段(主键在前), 有不能编码的属性时返回 null
+     */
+    static Map<String, String> columns(TableInfo tableInfo, BulkIngestEncoder encoder) {
+        if (tableInfo.getKeySequence() != null) {
+            return null;
+        }
+        Map<String, String> columns = new LinkedHashMap<>();
+        if (tableInfo.havePK() && tableInfo.getIdType() != IdType.AUTO) {
+            if (!encoder.supports(tableInfo.getKeyType())) {
+                return null;
+            }
+            columns.put(tableInfo.getKeyProperty(), tableInfo.getKeyColumn());
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            if (field.getTypeHandler() != null || field.getJdbcType() != null || !encoder.supports(field.getPropertyType())) {
+                return null;
+            }
+            columns.put(field.getProperty(), field.getColumn());
+        }
+        return columns;
+    }
+
+    private static RowInputStream rowStream(SqlSession sqlSession, TableInfo tableInfo, String insertOne, Iterator<?> iterator,
+                                         Collection<String> properties, BulkIngestEncoder encoder) {
+        return new RowInputStream(iterator, rowValues(sqlSession.getConfiguration(), tableInfo, insertOne, properties), encoder);
+    }
+
+    /**
+     * 按 insert 的规则填充主键和自动填充字段后取出各列的值, 逻辑删除字段为 null 时取未删除值
+     */
+    static Function<Object, List<?>> rowValues(Configuration configuration, TableInfo tableInfo, String insertOne,
+                                              Collection<String> properties) {
+        MappedStatement ms = configuration.getMappedStatement(insertOne);
+        TableFieldInfo logicDelete = tableInfo.isWithLogicDelete() ? tableInfo.getFieldList().stream()
+            .filter(TableFieldInfo::isLogicDelete).findFirst().orElse(null) : null;
+        Object notDeleteValue = logicDelete == null ? null : logicNotDeleteValue(logicDelete);
+        return entity -> {
+            new MybatisParameterHandler(ms, entity, null);
+            MetaObject metaObject = configuration.newMetaObject(entity);
+            List<Object> values = new ArrayList<>(properties.size());
+            for (String property : properties) {
+                Object value = metaObject.getValue(property);
+                if (value == null && logicDelete != null && logicDelete.getProperty().equals(property)) {
+                    value = notDeleteValue;
+                }
+                values.add(value);
+            }
+            return values;
+        };
+    }
+
+    private static Object logicNotDeleteValue(TableFieldInfo logicDelete) {
+        String value = logicDelete.getLogicNotDeleteValue();
+        if (StringPool.NULL.equalsIgnoreCase(value)) {
+            return null;
+        }
+        Class<?> type = logicDelete.getPropertyType();
+        return type == Boolean.class || type == boolean.class ? Boolean.valueOf(value) : value;
+    }
+
+    private static Class<?> classForName(String name) {
+        try {
+            return Resources.classForName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 驱动读取时才从 iterator 取数据并编码
+     */
+    static final class RowInputStream extends InputStream {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final Iterator<?> iterator;
+        private final Function<Object, List<?>> values;
+        private final BulkIngestEncoder encoder;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        private byte[] bytes = new byte[0];
+        private int position;
+        /**
+         * 已编码的行数
+         */
+        private long rows;
+
+        RowInputStream(Iterator<?> iterator, Function<Object, List<?>> values, BulkIngestEncoder encoder) {
+            this.iterator = iterator;
+            this.values = values;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public int read() {
+            if (position == bytes.length && !fill()) {
+                return -1;
+            }
+            return bytes[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == bytes.length && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, bytes.length - position);
+            System.arraycopy(bytes, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        long getRows() {
+            return rows;
+        }
+
+        private boolean fill() {
+            buffer.reset();
+            while (buffer.size() < BUFFER_SIZE && iterator.hasNext()) {
+                encoder.write(values.apply(iterator.next()), buffer);
+                rows++;
+            }
+            bytes = buffer.toByteArray();
+            position = 0;
+            return bytes.length > 0;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.toolkit;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 数据库原生批量导入格式的编码器
+ * <p>
+ * postgresql 的 COPY 文本格式与 mysql 的 LOAD DATA 默认格式一致: 字段以 tab 分隔, 行以换行结束,
+ * null 写作 {@code \N}, 值里的反斜杠 tab 换行回车用反斜杠转义, 编码为 UTF-8
+ * </p>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+public abstract class BulkIngestEncoder {
+
+    private static final byte[] NULL = {'\\', 'N'};
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * postgresql {@code COPY ... FROM STDIN} 文本格式
+     */
+    public static final BulkIngestEncoder POSTGRE_SQL = new BulkIngestEncoder() {
+        @Override
+        public boolean supports(Class<?> type) {
+            return type == byte[].class || super.supports(type);
+        }
+
+        @Override
+        protected String format(Object value) {
+            if (value instanceof Boolean) {
+                return (Boolean) value ? "t" : "f";
+            }
+            if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                StringBuilder sb = new StringBuilder(2 + bytes.length * 2).append("\\x");
+                for (byte b : bytes) {
+                    sb.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+                }
+                return sb.toString();
+            }
+            return super.format(value);
+        }
+    };
+
+    /**
+     * mysql {@code LOAD DATA LOCAL INFILE} 默认格式
+     */
+    public static final BulkIngestEncoder MYSQL = new BulkIngestEncoder() {
+        @Override
+        protected String format(Object value) {
+            if (value instanceof Boolean) {
+                return (Boolean) value ? "1" : "0";
+            }
+            return super.format(value);
+        }
+
+        @Override
+        protected void escape(char c, StringBuilder sb) {
+            if (c == '\0') {
+                sb.append("\\0");
+            } else {
+                super.escape(c, sb);
+            }
+        }
+    };
+
+    /**
+     * 是否可以编码该类型的值, 不支持时应改用 insert
+     * <p>
+     * 日期时间只支持 toString 格式两种数据库都接受的类型, 带时区的类型(ZonedDateTime, Instant 等)交给驱动处理
+     * </p>
+     *
+     * @param type 属性类型
+     * @return 是否支持
+     */
+    public boolean supports(Class<?> type) {
+        return type.isPrimitive() || CharSequence.class.isAssignableFrom(type) || Number.class.isAssignableFrom(type)
+            || type == Boolean.class || type == Character.class || Date.class.isAssignableFrom(type)
+            || type == LocalDate.class || type == LocalTime.class || type == LocalDateTime.class || type == UUID.class;
+    }
+
+    /**
+     * 写入一行
+     *
+     * @param values 按列顺序排列的值
+     * @param out    输出
+     */
+    public void write(List<?> values, ByteArrayOutputStream out) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.write('\t');
+            }
+            Object value = values.get(i);
+            if (value == null) {
+                out.write(NULL, 0, NULL.length);
+            } else {
+                sb.setLength(0);
+                String text = format(value);
+                for (int j = 0; j < text.length(); j++) {
+                    escape(text.charAt(j), sb);
+                }
+                byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+        out.write('\n');
+    }
+
+    /**
+     * 值转为文本(转义前)
+     */
+    protected String format(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof Date && !(value instanceof java.sql.Date || value instanceof java.sql.Time
+            || value instanceof Timestamp)) {
+            return new Timestamp(((Date) value).getTime()).toString();
+        }
+        if (value instanceof LocalDateTime) {
+            return value.toString().replace('T', ' ');
+        }
+        return value.toString();
+    }
+
+    /**
+     * 转义单个字符
+     */
+    protected void escape(char c, StringBuilder sb) {
+        switch (c) {
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            default:
+                sb.append(c);
+        }
+    }
+}
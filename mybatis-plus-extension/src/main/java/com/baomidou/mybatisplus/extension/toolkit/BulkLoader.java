@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.toolkit;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.Assert;
+import com.baomidou.mybatisplus.core.toolkit.ClassUtils;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.extension.injector.methods.InsertBatchSomeColumn;
+import com.baomidou.mybatisplus.extension.service.IService;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 并行分区批量导入(非事务)
+ * <p>
+ * 边读边写: 从 {@link Iterator} 或 {@link Stream} 读取数据, 每 chunkSize 条作为一个分区, 分区在 parallelism 个连接上并发写入并单独提交,
+ * 在途的分区数有上限(读取会等待写入), 不会把全部数据放到内存
+ * </p>
+ * <p>
+ * 分区之间互不影响, 某个分区失败只回滚该分区, 结果里记录每个分区的成败以及失败分区的数据, 方便重试;
+ * 每个分区在写入期间关闭连接的 autoCommit, 直接在连接上提交或回滚, 与事务管理方式(包括 mybatis-spring)无关
+ * </p>
+ * <p>
+ * 写入在线程池中执行, 调用线程的 ThreadLocal(例如租户插件和动态表名插件的上下文)不会传递过去:
+ * insert 会被这两个插件改写时必须设置 {@link #setTaskDecorator(UnaryOperator)} 把上下文带到写入线程, 否则拒绝导入
+ * </p>
+ * <pre>
+ * BulkLoader.Result&lt;User&gt; result = userService.bulkLoader().setParallelism(4).setChunkSize(5000).load(stream);
+ * </pre>
+ *
+ * @author miemie
+ * @since 3.4.3
+ */
+@Setter
+@Accessors(chain = true)
+public class BulkLoader<T> {
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    @Setter(lombok.AccessLevel.NONE)
+    private final Class<T> entityClass;
+    /**
+     * 并发写入的连接数
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * 每个分区的条数, 也是每次提交的条数
+     */
+    private int chunkSize = IService.DEFAULT_BATCH_SIZE;
+    /**
+     * 分区键, 设置后分区键相同的数据进入同一条通道, 按读取顺序依次写入; 为 null 时分区之间不保证顺序
+     */
+    private Function<? super T, ?> partitionBy;
+    /**
+     * 是否使用一条 insert 语句插入多行, 查看 {@link SqlHelper#saveBatchValues(Class, Class, org.apache.ibatis.logging.Log, Collection, int)};
+     * 为 false 时逐条 insert 并作为一个 JDBC batch 执行
+     */
+    private boolean valuesInsert;
+    /**
+     * 执行写入的线程池, 为 null 时每次导入创建 parallelism 个线程, 导入结束后关闭
+     */
+    private ExecutorService executorService;
+    /**
+     * 在调用线程上包装每个分区的写入任务, 用于把调用线程的上下文(ThreadLocal)带到写入线程并在结束后清理
+     */
+    private UnaryOperator<Runnable> taskDecorator;
+
+    public BulkLoader(Class<T> entityClass) {
+        this.entityClass = entityClass;
+    }
+
+    /**
+     * 导入
+     *
+     * @param stream 数据
+     * @return 每个分区的结果
+     */
+    public Result<T> load(Stream<? extends T> stream) {
+        return load(stream.iterator());
+    }
+
+    /**
+     * 导入
+     *
+     * @param iterator 数据
+     * @return 每个分区的结果
+     */
+    public Result<T> load(Iterator<? extends T> iterator) {
+        Assert.isTrue(parallelism > 0, "parallelism must be greater than 0");
+        Assert.isTrue(chunkSize > 0, "chunkSize must be greater than 0");
+        SqlSessionFactory sqlSessionFactory = SqlHelper.sqlSessionFactory(entityClass);
+        TableInfo tableInfo = SqlHelper.table(entityClass);
+        if (taskDecorator == null && SqlHelper.willRewriteInsert(sqlSessionFactory.getConfiguration(), tableInfo,
+            SqlHelper.getSqlStatement(ClassUtils.toClassConfident(tableInfo.getCurrentNamespace()), SqlMethod.INSERT_ONE))) {
+            throw ExceptionUtils.mpe("the insert of %s is rewritten by tenant or dynamic table name interceptor whose context "
+                + "is not visible to the writer threads, set taskDecorator to propagate it", entityClass.getName());
+        }
+        Consumer<List<T>> writer = writer(sqlSessionFactory, tableInfo);
+        ExecutorService executor = executorService == null ? Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "mybatis-plus-bulk-load-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : executorService;
+        // 每个通道最多一个分区在写, 一个分区在排队
+        Semaphore permits = new Semaphore(parallelism * 2);
+        List<Partition<T>> partitions = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        int lanes = partitionBy == null ? 1 : parallelism;
+        List<List<T>> buffers = new ArrayList<>(lanes);
+        List<CompletableFuture<Void>> tails = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            buffers.add(new ArrayList<>());
+            tails.add(CompletableFuture.completedFuture(null));
+        }
+        try {
+            while (iterator.hasNext()) {
+                T entity = iterator.next();
+                int lane = partitionBy == null ? 0 : Math.floorMod(Objects.hashCode(partitionBy.apply(entity)), lanes);
+                List<T> buffer = buffers.get(lane);
+                buffer.add(entity);
+                if (buffer.size() >= chunkSize) {
+                    submit(executor, writer, permits, partitions, futures, tails, lane, buffer);
+                    buffers.set(lane, new ArrayList<>());
+                }
+            }
+            for (int i = 0; i < lanes; i++) {
+                if (!buffers.get(i).isEmpty()) {
+                    submit(executor, writer, permits, partitions, futures, tails, i, buffers.get(i));
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            if (executorService == null) {
+                executor.shutdown();
+            }
+        }
+        return new Result<>(partitions);
+    }
+
+    private void submit(ExecutorService executor, Consumer<List<T>> writer, Semaphore permits, List<Partition<T>> partitions,
+                        List<CompletableFuture<Void>> futures, List<CompletableFuture<Void>> tails, int lane, List<T> records) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ExceptionUtils.mpe(e);
+        }
+        Partition<T> partition = new Partition<>(partitions.size(), records.size());
+        partitions.add(partition);
+        Runnable write = () -> write(writer, partition, records);
+        Runnable decorated = taskDecorator == null ? write : taskDecorator.apply(write);
+        Runnable task = () -> {
+            try {
+                decorated.run();
+            } finally {
+                permits.release();
+            }
+        };
+        CompletableFuture<Void> future;
+        if (partitionBy == null) {
+            future = CompletableFuture.runAsync(task, executor);
+        } else {
+            // 同一通道内依次执行
+            future = tails.get(lane).thenRunAsync(task, executor);
+            tails.set(lane, future);
+        }
+        futures.add(future);
+    }
+
+    private void write(Consumer<List<T>> writer, Partition<T> partition, List<T> records) {
+        long start = System.currentTimeMillis();
+        try {
+            writer.accept(records);
+        } catch (Throwable t) {
+            partition.error = ExceptionUtil.unwrapThrowable(t);
+            partition.records = records;
+        } finally {
+            partition.elapsed = System.currentTimeMillis() - start;
+        }
+    }
+
+    private Consumer<List<T>> writer(SqlSessionFactory sqlSessionFactory, TableInfo tableInfo) {
+        Class<?> mapper = ClassUtils.toClassConfident(tableInfo.getCurrentNamespace());
+        String insertOne = SqlHelper.getSqlStatement(mapper, SqlMethod.INSERT_ONE);
+        Consumer<List<T>> batchWriter = records -> inPartition(sqlSessionFactory, ExecutorType.BATCH, sqlSession -> {
+            for (T entity : records) {
+                sqlSession.insert(insertOne, entity);
+            }
+        });
+        if (!valuesInsert || tableInfo.getKeySequence() != null) {
+            return batchWriter;
+        }
+        DbType dbType;
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            dbType = SqlHelper.getDbType(sqlSession);
+        }
+        int rows = SqlHelper.insertValuesRows(dbType, SqlHelper.insertColumns(tableInfo), chunkSize);
+        if (rows < 1) {
+            return batchWriter;
+        }
+        String sqlStatement = SqlHelper.injectedStatement(sqlSessionFactory.getConfiguration(), mapper, new InsertBatchSomeColumn());
+        return records -> inPartition(sqlSessionFactory, ExecutorType.SIMPLE,
+            sqlSession -> SqlHelper.insertChunks(sqlSession, sqlStatement, records, rows));
+    }
+
+    /**
+     * 在一个本地事务中写入一个分区
+     * <p>
+     * SpringManagedTransaction 在连接 autoCommit 时 commit 和 rollback 什么都不做, 所以写入期间关闭 autoCommit,
+     * 直接在连接上提交或回滚, 结束后恢复
+     * </p>
+     */
+    @SneakyThrows
+    private static void inPartition(SqlSessionFactory sqlSessionFactory, ExecutorType executorType, Consumer<SqlSession> consumer) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(executorType)) {
+            Connection connection = sqlSession.getConnection();
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                consumer.accept(sqlSession);
+                sqlSession.flushStatements();
+                connection.commit();
+            } catch (Throwable t) {
+                // 丢弃还没有执行的 batch
+                sqlSession.rollback(true);
+                connection.rollback();
+                throw t;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * 导入结果
+     */
+    @Getter
+    @ToString
+    public static class Result<T> {
+
+        /**
+         * 按读取顺序排列的分区
+         */
+        private final List<Partition<T>> partitions;
+
+        Result(List<Partition<T>> partitions) {
+            this.partitions = Collections.unmodifiableList(partitions);
+        }
+
+        public boolean isSuccess() {
+            return partitions.stream().allMatch(Partition::isSuccess);
+        }
+
+        /**
+         * @return 写入成功的条数
+         */
+        public long getSuccessRows() {
+            return partitions.stream().filter(Partition::isSuccess).mapToLong(Partition::getSize).sum();
+        }
+
+        public List<Partition<T>> getFailedPartitions() {
+            return partitions.stream().filter(p -> !p.isSuccess()).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 分区结果
+     */
+    @Getter
+    @ToString(exclude = "records")
+    public static class Partition<T> {
+
+        /**
+         * 分区序号(按读取顺序)
+         */
+        private final int index;
+        private final int size;
+        private volatile long elapsed;
+        /**
+         * 失败原因, 成功为 null
+         */
+        private volatile Throwable error;
+        /**
+         * 失败分区的数据, 成功为 null
+         */
+        private volatile List<T> records;
+
+        Partition(int index, int size) {
+            this.index = index;
+            this.size = size;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+}
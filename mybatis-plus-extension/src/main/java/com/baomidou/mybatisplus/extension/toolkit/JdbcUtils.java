@@ -17,6 +17,7 @@ package com.baomidou.mybatisplus.extension.toolkit;
 
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.core.toolkit.Assert;
+import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
 import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import org.apache.ibatis.executor.Executor;
@@ -25,6 +26,8 @@ import org.apache.ibatis.logging.LogFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -36,6 +39,12 @@ import java.util.regex.Pattern;
 public class JdbcUtils {
 
     private static final Log logger = LogFactory.getLog(JdbcUtils.class);
+    private static final Pattern DM_PATTERN = Pattern.compile(":dm\\d*:");
+    private static final Pattern KINGBASE_PATTERN = Pattern.compile(":kingbase\\d*:");
+    /**
+     * 连接地址 -> 数据库类型
+     */
+    private static final Map<String, DbType> DB_TYPE_CACHE = new ConcurrentHashMap<>();
 
     /**
      * 不关闭 Connection,因为是从事务里获取的,sqlSession会负责关闭
@@ -44,9 +53,23 @@ public class JdbcUtils {
      * @return DbType
      */
     public static DbType getDbType(Executor executor) {
+        return getDbType(getJdbcUrl(executor));
+    }
+
+    /**
+     * 获取当前连接的连接地址
+     * <p>
+     * 不关闭 Connection,因为是从事务里获取的,sqlSession会负责关闭
+     * </p>
+     *
+     * @param executor Executor
+     * @return 连接地址
+     * @since 3.4.3
+     */
+    public static String getJdbcUrl(Executor executor) {
         try {
             Connection conn = executor.getTransaction().getConnection();
-            return getDbType(conn.getMetaData().getURL());
+            return conn.getMetaData().getURL();
         } catch (SQLException e) {
             throw ExceptionUtils.mpe(e);
         }
@@ -54,12 +77,19 @@ public class JdbcUtils {
 
     /**
      * 根据连接地址判断数据库类型
+     * <p>
+     * 同一个连接地址只判断一次
+     * </p>
      *
      * @param jdbcUrl 连接地址
      * @return ignore
      */
     public static DbType getDbType(String jdbcUrl) {
         Assert.isFalse(StringUtils.isBlank(jdbcUrl), "Error: The jdbcUrl is Null, Cannot read database type");
+        return CollectionUtils.computeIfAbsent(DB_TYPE_CACHE, jdbcUrl, JdbcUtils::resolveDbType);
+    }
+
+    private static DbType resolveDbType(String jdbcUrl) {
         String url = jdbcUrl.toLowerCase();
         if (url.contains(":mysql:") || url.contains(":cobar:")) {
             return DbType.MYSQL;
@@ -81,11 +111,11 @@ public class JdbcUtils {
             return DbType.SQLITE;
         } else if (url.contains(":h2:")) {
             return DbType.H2;
-        } else if (regexFind(":dm\\d*:", url)) {
+        } else if (DM_PATTERN.matcher(url).find()) {
             return DbType.DM;
         } else if (url.contains(":xugu:")) {
             return DbType.XU_GU;
-        } else if (regexFind(":kingbase\\d*:", url)) {
+        } else if (KINGBASE_PATTERN.matcher(url).find()) {
             return DbType.KINGBASE_ES;
         } else if (url.contains(":phoenix:")) {
             return DbType.PHOENIX;
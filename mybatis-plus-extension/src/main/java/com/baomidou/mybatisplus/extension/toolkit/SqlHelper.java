@@ -15,14 +15,34 @@
  */
 package com.baomidou.mybatisplus.extension.toolkit;
 
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
 import com.baomidou.mybatisplus.core.metadata.TableInfo;
 import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.baomidou.mybatisplus.core.toolkit.*;
+import com.baomidou.mybatisplus.extension.injector.BatchSqlInjector;
+import com.baomidou.mybatisplus.extension.injector.TenantLineSqlSource;
+import com.baomidou.mybatisplus.extension.injector.methods.AlwaysUpdateSomeColumnById;
+import com.baomidou.mybatisplus.extension.injector.methods.InsertBatchSomeColumn;
+import com.baomidou.mybatisplus.extension.injector.methods.UpsertBatch;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.DataPermissionInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.DynamicTableNameInnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.TenantLineInnerInterceptor;
 import lombok.SneakyThrows;
+import org.apache.ibatis.binding.MapperMethod;
 import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
 import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -31,12 +51,20 @@ import org.mybatis.spring.SqlSessionHolder;
 import org.mybatis.spring.SqlSessionUtils;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Collection;
-import java.util.List;
+import java.io.Serializable;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * SQL 辅助类
@@ -150,8 +178,22 @@ public final class SqlHelper {
      * @return 操作结果
      * @since 3.4.0
      */
-    @SneakyThrows
     public static boolean executeBatch(Class<?> entityClass, Log log, Consumer<SqlSession> consumer) {
+        return execute(entityClass, log, ExecutorType.BATCH, consumer);
+    }
+
+    /**
+     * 使用指定类型的执行器执行操作
+     *
+     * @param entityClass  实体
+     * @param log          日志对象
+     * @param executorType 执行器类型
+     * @param consumer     consumer
+     * @return 操作结果
+     * @since 3.4.3
+     */
+    @SneakyThrows
+    private static boolean execute(Class<?> entityClass, Log log, ExecutorType executorType, Consumer<SqlSession> consumer) {
         SqlSessionFactory sqlSessionFactory = sqlSessionFactory(entityClass);
         SqlSessionHolder sqlSessionHolder = (SqlSessionHolder) TransactionSynchronizationManager.getResource(sqlSessionFactory);
         boolean transaction = TransactionSynchronizationManager.isSynchronizationActive();
@@ -161,7 +203,7 @@ public final class SqlHelper {
             //按道理来说，这里的值应该一直为false。
             sqlSession.commit(!transaction);
         }
-        SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+        SqlSession sqlSession = sqlSessionFactory.openSession(executorType);
         if (!transaction) {
             log.warn("SqlSession [" + sqlSession + "] Transaction not enabled");
         }
@@ -238,6 +280,603 @@ public final class SqlHelper {
         });
     }
 
+    /**
+     * 批量更新或保存
+     * <p>
+     * 每 batchSize 条数据只用一条 {@code SELECT id ... WHERE id IN (...)} 查出已存在的主键, 然后批量执行 insert 和 updateById;
+     * 查出的主键和实体上的值对不上时(大小写不敏感、忽略尾部空格的排序规则), 这一批中没对上的数据逐条按主键查询后再决定
+     * </p>
+     * <p>
+     * 注意: 同一批中只有排序规则下相等的几个新主键(如 'a' 和 'A') 会都走 insert
+     * </p>
+     *
+     * @param entityClass 实体
+     * @param mapper      mapper
+     * @param log         日志对象
+     * @param list        数据集合
+     * @param batchSize   批次大小
+     * @param <E>         E
+     * @return 操作结果
+     * @since 3.4.3
+     */
+    public static <E> boolean saveOrUpdateBatch(Class<?> entityClass, Class<?> mapper, Log log, Collection<E> list, int batchSize) {
+        Assert.isFalse(batchSize < 1, "batchSize must not be less than one");
+        TableInfo tableInfo = table(entityClass);
+        String keyProperty = tableInfo.getKeyProperty();
+        Assert.notEmpty(keyProperty, "error: can not execute. because can not find column for id from entity!");
+        String insertOne = getSqlStatement(mapper, SqlMethod.INSERT_ONE);
+        String updateById = getSqlStatement(mapper, SqlMethod.UPDATE_BY_ID);
+        String selectList = getSqlStatement(mapper, SqlMethod.SELECT_LIST);
+        String selectById = getSqlStatement(mapper, SqlMethod.SELECT_BY_ID);
+        return !CollectionUtils.isEmpty(list) && executeBatch(entityClass, log, sqlSession -> {
+            List<E> chunk = new ArrayList<>(Math.min(batchSize, list.size()));
+            int i = 1;
+            for (E entity : list) {
+                chunk.add(entity);
+                if (i % batchSize == 0 || i == list.size()) {
+                    saveOrUpdateChunk(sqlSession, tableInfo, chunk, insertOne, updateById, selectList, selectById);
+                    sqlSession.flushStatements();
+                    chunk.clear();
+                }
+                i++;
+            }
+        });
+    }
+
+    private static <E> void saveOrUpdateChunk(SqlSession sqlSession, TableInfo tableInfo, List<E> chunk, String insertOne,
+                                              String updateById, String selectList, String selectById) {
+        String keyProperty = tableInfo.getKeyProperty();
+        Set<Object> ids = new HashSet<>();
+        for (E entity : chunk) {
+            Object idVal = ReflectionKit.getFieldValue(entity, keyProperty);
+            if (!StringUtils.checkValNull(idVal)) {
+                ids.add(idVal);
+            }
+        }
+        Set<Object> existing = new HashSet<>();
+        boolean unmatched = false;
+        if (!ids.isEmpty()) {
+            // 查出来的主键按实体字段类型映射, 一般和实体上的主键值可以直接比较
+            MapperMethod.ParamMap<Object> param = new MapperMethod.ParamMap<>();
+            param.put(Constants.WRAPPER, Wrappers.query().select(tableInfo.getKeySqlSelect()).in(tableInfo.getKeyColumn(), ids));
+            for (Object exist : sqlSession.selectList(selectList, param)) {
+                Object idVal = ReflectionKit.getFieldValue(exist, keyProperty);
+                if (ids.contains(idVal)) {
+                    existing.add(idVal);
+                } else {
+                    // 大小写不敏感或者忽略尾部空格的排序规则下, 数据库认为相等的主键在 java 里不相等
+                    unmatched = true;
+                }
+            }
+        }
+        for (E entity : chunk) {
+            Object idVal = ReflectionKit.getFieldValue(entity, keyProperty);
+            boolean exists;
+            if (StringUtils.checkValNull(idVal)) {
+                exists = false;
+            } else if (existing.contains(idVal)) {
+                exists = true;
+            } else if (unmatched) {
+                // 无法按值判断, 逐条按主键查询, 查询前会先执行已攒下的语句
+                exists = sqlSession.selectOne(selectById, idVal) != null;
+            } else {
+                exists = false;
+            }
+            if (exists) {
+                MapperMethod.ParamMap<E> param = new MapperMethod.ParamMap<>();
+                param.put(Constants.ENTITY, entity);
+                sqlSession.update(updateById, param);
+            } else {
+                sqlSession.insert(insertOne, entity);
+                if (!StringUtils.checkValNull(idVal)) {
+                    // 同一批里重复的主键后面的走更新
+                    existing.add(idVal);
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据ID 批量更新
+     * <p>
+     * UpdateById 按字段更新策略用 if 标签决定 set 哪些字段, 不同的数据生成的 sql 可能不同, 而 BATCH 执行器只合并相邻的相同 sql,
+     * 所以每 batchSize 条数据先按会生成的 sql 分组再执行, 每组只 prepare 一次并作为一个 JDBC batch 执行
+     * </p>
+     *
+     * @param entityClass 实体
+     * @param mapper      mapper
+     * @param log         日志对象
+     * @param list        数据集合
+     * @param batchSize   批次大小
+     * @param <E>         E
+     * @return 操作结果
+     * @since 3.4.3
+     */
+    public static <E> boolean updateBatchById(Class<?> entityClass, Class<?> mapper, Log log, Collection<E> list, int batchSize) {
+        TableInfo tableInfo = table(entityClass);
+        List<TableFieldInfo> conditionalFields = tableInfo.getFieldList().stream()
+            .filter(i -> !(tableInfo.isWithLogicDelete() && i.isLogicDelete()) && updateConditional(i))
+            .collect(Collectors.toList());
+        return updateBatch(entityClass, log, list, batchSize, tableInfo, getSqlStatement(mapper, SqlMethod.UPDATE_BY_ID),
+            conditionalFields);
+    }
+
+    /**
+     * 根据ID 批量更新所有字段(逻辑删除字段除外), 实体中为 null 的字段也会更新为 null
+     * <p>
+     * 使用 {@link AlwaysUpdateSomeColumnById}(需要启动时注入, 查看 {@link BatchSqlInjector}), 所有数据都是同一条 sql, 每批只有一个 JDBC batch
+     * </p>
+     *
+     * @param entityClass 实体
+     * @param mapper      mapper
+     * @param log         日志对象
+     * @param list        数据集合
+     * @param batchSize   批次大小
+     * @param <E>         E
+     * @return 操作结果
+     * @since 3.4.3
+     */
+    public static <E> boolean updateAllColumnBatchById(Class<?> entityClass, Class<?> mapper, Log log, Collection<E> list, int batchSize) {
+        TableInfo tableInfo = table(entityClass);
+        String sqlStatement = injectedStatement(sqlSessionFactory(entityClass).getConfiguration(), mapper,
+            new AlwaysUpdateSomeColumnById());
+        return updateBatch(entityClass, log, list, batchSize, tableInfo, sqlStatement, Collections.emptyList());
+    }
+
+    private static <E> boolean updateBatch(Class<?> entityClass, Log log, Collection<E> list, int batchSize, TableInfo tableInfo,
+                                           String sqlStatement, List<TableFieldInfo> conditionalFields) {
+        Assert.isFalse(batchSize < 1, "batchSize must not be less than one");
+        String keyProperty = tableInfo.getKeyProperty();
+        Assert.notEmpty(keyProperty, "error: can not execute. because can not find column for id from entity!");
+        // 乐观锁的 where 条件也是 if 标签
+        TableFieldInfo versionField = tableInfo.getVersionFieldInfo();
+        return !CollectionUtils.isEmpty(list) && executeBatch(entityClass, log, sqlSession -> {
+            Map<BitSet, List<E>> groups = new LinkedHashMap<>();
+            Set<Object> ids = new HashSet<>();
+            int i = 1;
+            for (E entity : list) {
+                Object idVal = ReflectionKit.getFieldValue(entity, keyProperty);
+                if (idVal != null && !ids.add(idVal)) {
+                    // 同一条数据更新多次时要保持顺序
+                    updateGroups(sqlSession, sqlStatement, groups);
+                    ids.clear();
+                    ids.add(idVal);
+                }
+                BitSet signature = new BitSet(conditionalFields.size() + 1);
+                for (int j = 0; j < conditionalFields.size(); j++) {
+                    TableFieldInfo field = conditionalFields.get(j);
+                    Object value = ReflectionKit.getFieldValue(entity, field.getProperty());
+                    if (value != null && !(field.getUpdateStrategy() == FieldStrategy.NOT_EMPTY && field.isCharSequence()
+                        && value.toString().isEmpty())) {
+                        signature.set(j);
+                    }
+                }
+                if (versionField != null && ReflectionKit.getFieldValue(entity, versionField.getProperty()) != null) {
+                    signature.set(conditionalFields.size());
+                }
+                groups.computeIfAbsent(signature, k -> new ArrayList<>()).add(entity);
+                if (i % batchSize == 0 || i == list.size()) {
+                    updateGroups(sqlSession, sqlStatement, groups);
+                    sqlSession.flushStatements();
+                    ids.clear();
+                }
+                i++;
+            }
+        });
+    }
+
+    private static <E> void updateGroups(SqlSession sqlSession, String sqlStatement, Map<BitSet, List<E>> groups) {
+        for (List<E> group : groups.values()) {
+            for (E entity : group) {
+                MapperMethod.ParamMap<E> param = new MapperMethod.ParamMap<>();
+                param.put(Constants.ENTITY, entity);
+                sqlSession.update(sqlStatement, param);
+            }
+        }
+        groups.clear();
+    }
+
+    /**
+     * 字段是否由 if 标签决定是否 set, 与 {@link TableFieldInfo#getSqlSet(boolean, String)} 一致
+     */
+    private static boolean updateConditional(TableFieldInfo field) {
+        return !field.isWithUpdateFill() && field.getUpdateStrategy() != FieldStrategy.NEVER && !field.isPrimitive()
+            && field.getUpdateStrategy() != FieldStrategy.IGNORED;
+    }
+
+    /**
+     * 批量插入, 一条 insert 语句插入多行
+     * <p>
+     * 使用 {@link InsertBatchSomeColumn}(需要启动时注入, 查看 {@link BatchSqlInjector}), 每条语句的行数由 batchSize 和数据库的参数个数上限决定,
+     * 查看 {@link #insertValuesRows(DbType, int, int)}
+     * </p>
+     * <p>
+     * {@link BatchSqlInjector} 注入的 {@link InsertBatchSomeColumn} 在逻辑删除字段为 null 时写入未删除值, 自己注入的以其配置为准
+     * </p>
+     * <p>
+     * 不支持多行 values 的数据库以及使用 {@link com.baomidou.mybatisplus.annotation.KeySequence} 的实体退化为逐条 insert
+     * </p>
+     *
+     * @param entityClass 实体
+     * @param mapper      mapper
+     * @param log         日志对象
+     * @param list        数据集合
+     * @param batchSize   每条语句最多插入的行数
+     * @param <E>         E
+     * @return 操作结果
+     * @since 3.4.3
+     */
+    public static <E> boolean saveBatchValues(Class<?> entityClass, Class<?> mapper, Log log, Collection<E> list, int batchSize) {
+        Assert.isFalse(batchSize < 1, "batchSize must not be less than one");
+        if (CollectionUtils.isEmpty(list)) {
+            return false;
+        }
+        TableInfo tableInfo = table(entityClass);
+        String insertOne = getSqlStatement(mapper, SqlMethod.INSERT_ONE);
+        if (tableInfo.getKeySequence() != null) {
+            return executeBatch(entityClass, log, list, batchSize, (sqlSession, entity) -> sqlSession.insert(insertOne, entity));
+        }
+        String sqlStatement = injectedStatement(sqlSessionFactory(entityClass).getConfiguration(), mapper,
+            new InsertBatchSomeColumn());
+        int columns = insertColumns(tableInfo);
+        AtomicBoolean unsupported = new AtomicBoolean();
+        // 每条语句都不一样, BATCH 执行器没有意义, 并且它无法把多行的自增主键回写到实体
+        boolean result = execute(entityClass, log, ExecutorType.SIMPLE, sqlSession -> {
+            int rows = insertValuesRows(getDbType(sqlSession), columns, batchSize);
+            if (rows < 1) {
+                unsupported.set(true);
+                return;
+            }
+            insertChunks(sqlSession, sqlStatement, list, rows);
+        });
+        if (unsupported.get()) {
+            return executeBatch(entityClass, log, list, batchSize, (sqlSession, entity) -> sqlSession.insert(insertOne, entity));
+        }
+        return result;
+    }
+
+    /**
+     * 批量插入或更新, 使用数据库原生的 upsert 语句({@link UpsertBatch}, 需要启动时注入, 查看 {@link BatchSqlInjector}), 不需要先查询
+     * <p>
+     * 每条语句的行数由 batchSize 和数据库的参数个数上限决定; 主键为空并且不会自动分配主键的数据直接插入,
+     * 查看 {@link #saveBatchValues(Class, Class, Log, Collection, int)}; {@link UpsertBatch} 不支持的数据库退化为
+     * {@link #saveOrUpdateBatch(Class, Class, Log, Collection, int)}
+     * </p>
+     * <p>
+     * 表会被租户插件处理或者注册了数据权限插件时也退化: MERGE 和 ON CONFLICT 这些插件无法改写,
+     * ON DUPLICATE KEY UPDATE 改写后主键冲突时仍会更新其他租户的数据
+     * </p>
+     * <p>
+     * 注意: 原生 upsert 已存在时把实体中为 null 的字段更新为 null, 退化的 updateById 按字段策略更新(默认不更新为 null 的字段)
+     * </p>
+     *
+     * @param entityClass 实体
+     * @param mapper      mapper
+     * @param log         日志对象
+     * @param list        数据集合
+     * @param batchSize   每条语句最多处理的行数
+     * @param <E>         E
+     * @return 操作结果
+     * @since 3.4.3
+     */
+    public static <E> boolean upsertBatch(Class<?> entityClass, Class<?> mapper, Log log, Collection<E> list, int batchSize) {
+        Assert.isFalse(batchSize < 1, "batchSize must not be less than one");
+        if (CollectionUtils.isEmpty(list)) {
+            return false;
+        }
+        TableInfo tableInfo = table(entityClass);
+        String keyProperty = tableInfo.getKeyProperty();
+        Assert.notEmpty(keyProperty, "error: can not execute. because can not find column for id from entity!");
+        // 与 MybatisParameterHandler#populateKeys 一致, ASSIGN_ID 和 ASSIGN_UUID 会在插入前分配主键
+        boolean assignKey = tableInfo.getIdType() != null && tableInfo.getIdType().getKey() >= IdType.ASSIGN_ID.getKey();
+        List<E> upsertList = new ArrayList<>(list.size());
+        List<E> insertList = new ArrayList<>();
+        for (E entity : list) {
+            if (!assignKey && StringUtils.checkValNull(ReflectionKit.getFieldValue(entity, keyProperty))) {
+                insertList.add(entity);
+            } else {
+                upsertList.add(entity);
+            }
+        }
+        Configuration configuration = sqlSessionFactory(entityClass).getConfiguration();
+        int columns = tableInfo.getFieldList().size() + 1;
+        AtomicBoolean unsupported = new AtomicBoolean();
+        boolean result = upsertList.isEmpty() || execute(entityClass, log, ExecutorType.SIMPLE, sqlSession -> {
+            DbType dbType = upsertDbType(sqlSession);
+            if (dbType == null) {
+                unsupported.set(true);
+                return;
+            }
+            String sqlStatement = injectedStatement(configuration, mapper, new UpsertBatch(dbType));
+            if (willRewrite(configuration, configuration.getMappedStatement(sqlStatement), i -> i instanceof DataPermissionInterceptor
+                || (i instanceof TenantLineInnerInterceptor && !((TenantLineInnerInterceptor) i).getTenantLineHandler().ignoreTable(tableInfo.getTableName())))) {
+                unsupported.set(true);
+                return;
+            }
+            insertChunks(sqlSession, sqlStatement, upsertList, Math.min(batchSize, maxBindParameters(dbType) / columns));
+        });
+        if (unsupported.get()) {
+            return saveOrUpdateBatch(entityClass, mapper, log, list, batchSize);
+        }
+        if (!insertList.isEmpty()) {
+            result = saveBatchValues(entityClass, mapper, log, insertList, batchSize) && result;
+        }
+        return result;
+    }
+
+    /**
+     * 分块执行一条语句处理多行的 insert
+     */
+    static <E> void insertChunks(SqlSession sqlSession, String sqlStatement, Collection<E> list, int rows) {
+        List<E> chunk = new ArrayList<>(Math.min(rows, list.size()));
+        for (E entity : list) {
+            chunk.add(entity);
+            if (chunk.size() == rows) {
+                sqlSession.insert(sqlStatement, chunk);
+                chunk = new ArrayList<>(rows);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            sqlSession.insert(sqlStatement, chunk);
+        }
+    }
+
+    /**
+     * 当前连接可以使用 {@link UpsertBatch} 时返回数据库类型, 否则返回 null
+     * <p>
+     * jdbc:sqlserver: 的 url 解析为 {@link DbType#SQL_SERVER2005}, MERGE 需要 sqlserver 2008(主版本 10)及以上
+     * </p>
+     */
+    static DbType upsertDbType(SqlSession sqlSession) {
+        try {
+            DatabaseMetaData metaData = sqlSession.getConnection().getMetaData();
+            DbType dbType = JdbcUtils.getDbType(metaData.getURL());
+            if (!UpsertBatch.supports(dbType) || (dbType == DbType.SQL_SERVER2005 && metaData.getDatabaseMajorVersion() < 10)) {
+                return null;
+            }
+            return dbType;
+        } catch (SQLException e) {
+            throw ExceptionUtils.mpe(e);
+        }
+    }
+
+    static DbType getDbType(SqlSession sqlSession) {
+        try {
+            return JdbcUtils.getDbType(sqlSession.getConnection().getMetaData().getURL());
+        } catch (SQLException e) {
+            throw ExceptionUtils.mpe(e);
+        }
+    }
+
+    /**
+     * {@link InsertBatchSomeColumn} 每行的参数个数
+     */
+    static int insertColumns(TableInfo tableInfo) {
+        return tableInfo.getFieldList().size() + (tableInfo.havePK() && tableInfo.getIdType() != IdType.AUTO ? 1 : 0);
+    }
+
+    /**
+     * 多行 values 的 insert 语句每条最多插入的行数
+     * <p>
+     * 受数据库(驱动)单条语句参数个数上限约束, 例如 postgresql 32767, sqlserver 2098(2100 减去驱动自身使用的, 并且最多 1000 行), sqlite 999
+     * </p>
+     *
+     * @param dbType    数据库类型
+     * @param columns   每行的参数个数
+     * @param batchSize 期望的行数
+     * @return 行数, 数据库不支持多行 values 时返回 0
+     * @since 3.4.3
+     */
+    public static int insertValuesRows(DbType dbType, int columns, int batchSize) {
+        switch (dbType) {
+            case ORACLE:
+            case ORACLE_12C:
+            case FIREBIRD:
+            case SYBASE:
+            case PHOENIX:
+            case OTHER:
+                return 0;
+            case SQL_SERVER:
+            case SQL_SERVER2005:
+                // insert 的 values 最多 1000 行
+                batchSize = Math.min(batchSize, 1000);
+                break;
+            default:
+        }
+        return Math.min(batchSize, maxBindParameters(dbType) / Math.max(columns, 1));
+    }
+
+    /**
+     * 数据库(驱动)单条语句参数个数上限
+     */
+    private static int maxBindParameters(DbType dbType) {
+        switch (dbType) {
+            case POSTGRE_SQL:
+            case GAUSS:
+            case KINGBASE_ES:
+            case HIGH_GO:
+                return Short.MAX_VALUE;
+            case SQL_SERVER:
+            case SQL_SERVER2005:
+                // 2100 个参数里包含驱动调用 sp_prepexec 等自身使用的参数
+                return 2098;
+            case SQLITE:
+                return 999;
+            default:
+                return 65535;
+        }
+    }
+
+    /**
+     * 根据 ID 集合分块查询, 见 {@link #selectBatchIds(BaseMapper, Collection, int, Executor)}
+     *
+     * @param mapper    mapper
+     * @param idList    主键ID集合
+     * @param chunkSize 每条 sql in 列表的最大长度
+     * @return 所有块的查询结果
+     * @since 3.4.3
+     */
+    public static <E> List<E> selectBatchIds(BaseMapper<E> mapper, Collection<? extends Serializable> idList, int chunkSize) {
+        return selectBatchIds(mapper, idList, chunkSize, null);
+    }
+
+    /**
+     * 根据 ID 集合分块查询
+     * <p>
+     * ID 去重后按 chunkSize 分块(不超过 oracle in 列表 1000 个, sqlserver 参数 2100 个的上限),
+     * 最后一块用最后一个 ID 补齐到 2 的幂次(或 chunkSize), 使得不同数量的 ID 只会生成少数几种 sql, 方便复用预编译语句
+     * </p>
+     * <p>
+     * 指定 executor 时各块并行查询, 并行的查询使用各自的连接, 不在当前事务内
+     * </p>
+     * <p>
+     * 并行的查询在线程池的线程上执行, 拿不到当前线程的 ThreadLocal 上下文, 以下情况即使指定了 executor 也在当前线程依次查询:
+     * 当前线程有 spring 事务(并行查询看不到事务内未提交的数据); 该查询会被租户、数据权限、动态表名插件改写(这些插件通常从当前线程获取租户、权限、表名);
+     * 无法确定 mapper 对应的配置. 基于 ThreadLocal 切换的多数据源等其他上下文仍需使用会传递上下文的线程池
+     * </p>
+     *
+     * @param mapper    mapper
+     * @param idList    主键ID集合
+     * @param chunkSize 每条 sql in 列表的最大长度
+     * @param executor  并行查询使用的线程池, 为 null 时依次查询
+     * @return 所有块的查询结果(按块的顺序合并)
+     * @since 3.4.3
+     */
+    public static <E> List<E> selectBatchIds(BaseMapper<E> mapper, Collection<? extends Serializable> idList, int chunkSize,
+                                             Executor executor) {
+        List<List<Serializable>> chunks = idChunks(idList, chunkSize);
+        if (chunks.size() == 1) {
+            return mapper.selectBatchIds(chunks.get(0));
+        }
+        List<E> result = new ArrayList<>();
+        if (executor == null || !parallelSafe(mapper)) {
+            chunks.forEach(chunk -> result.addAll(mapper.selectBatchIds(chunk)));
+            return result;
+        }
+        List<CompletableFuture<List<E>>> futures = chunks.stream()
+            .map(chunk -> CompletableFuture.supplyAsync(() -> mapper.selectBatchIds(chunk), executor))
+            .collect(Collectors.toList());
+        try {
+            futures.forEach(future -> result.addAll(future.join()));
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : ExceptionUtils.mpe(e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * selectBatchIds 能否在其他线程执行: 当前线程没有 spring 事务, 且查询不会被依赖调用线程上下文的插件改写
+     */
+    static boolean parallelSafe(BaseMapper<?> mapper) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        Class<?> mapperInterface = Arrays.stream(mapper.getClass().getInterfaces())
+            .filter(BaseMapper.class::isAssignableFrom).findFirst().orElse(null);
+        Class<?> entityClass = mapperInterface == null ? null : ReflectionKit.getSuperClassGenericType(mapperInterface, BaseMapper.class, 0);
+        TableInfo tableInfo = entityClass == null ? null : TableInfoHelper.getTableInfo(entityClass);
+        if (tableInfo == null) {
+            return false;
+        }
+        Configuration configuration = tableInfo.getConfiguration();
+        String id = mapperInterface.getName() + StringPool.DOT + SqlMethod.SELECT_BATCH_BY_IDS.getMethod();
+        if (!configuration.hasStatement(id, false)) {
+            return false;
+        }
+        return !willRewrite(configuration, configuration.getMappedStatement(id, false), i -> i instanceof DataPermissionInterceptor
+            || i instanceof DynamicTableNameInnerInterceptor
+            || (i instanceof TenantLineInnerInterceptor && !((TenantLineInnerInterceptor) i).getTenantLineHandler().ignoreTable(tableInfo.getTableName())));
+    }
+
+    /**
+     * 根据 ID 集合分块删除, 分块规则同 {@link #selectBatchIds(BaseMapper, Collection, int, Executor)}
+     *
+     * @param mapper    mapper
+     * @param idList    主键ID集合
+     * @param chunkSize 每条 sql in 列表的最大长度
+     * @return 删除的行数
+     * @since 3.4.3
+     */
+    public static int deleteBatchIds(BaseMapper<?> mapper, Collection<? extends Serializable> idList, int chunkSize) {
+        int rows = 0;
+        for (List<Serializable> chunk : idChunks(idList, chunkSize)) {
+            rows += mapper.deleteBatchIds(chunk);
+        }
+        return rows;
+    }
+
+    /**
+     * ID 去重后分块, 最后一块补齐到 2 的幂次(或 chunkSize)
+     */
+    static List<List<Serializable>> idChunks(Collection<? extends Serializable> idList, int chunkSize) {
+        Assert.notEmpty(idList, "error: idList must not be empty");
+        Assert.isFalse(chunkSize < 1, "chunkSize must not be less than one");
+        List<Serializable> ids = new ArrayList<>(new LinkedHashSet<>(idList));
+        List<List<Serializable>> chunks = new ArrayList<>(ids.size() / chunkSize + 1);
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Serializable> chunk = new ArrayList<>(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+            int bucket = Math.min(chunkSize, Integer.highestOneBit(chunk.size() - 1) << 1);
+            Serializable last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < bucket) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * 执行该 MappedStatement 时是否有符合条件的插件会改写 sql
+     *
+     * @param configuration 配置
+     * @param ms            MappedStatement
+     * @param filter        插件筛选条件
+     * @return 是否会被改写
+     */
+    static boolean willRewrite(Configuration configuration, MappedStatement ms, Predicate<InnerInterceptor> filter) {
+        if (ms.getSqlSource() instanceof TenantLineSqlSource) {
+            return true;
+        }
+        for (Interceptor interceptor : configuration.getInterceptors()) {
+            if (interceptor instanceof MybatisPlusInterceptor) {
+                for (InnerInterceptor inner : ((MybatisPlusInterceptor) interceptor).getInterceptors()) {
+                    if (filter.test(inner) && (inner.willInterceptExecutor(ms) || inner.willInterceptStatementHandler(ms))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 实体的 insert 是否会被插件改写(租户字段, 动态表名)
+     * <p>
+     * 原生导入无法应用这些改写, 写入线程也拿不到这些插件依赖的调用线程上下文
+     * </p>
+     */
+    static boolean willRewriteInsert(Configuration configuration, TableInfo tableInfo, String insertOne) {
+        return willRewrite(configuration, configuration.getMappedStatement(insertOne), i -> i instanceof DynamicTableNameInnerInterceptor
+            || (i instanceof TenantLineInnerInterceptor && !((TenantLineInnerInterceptor) i).getTenantLineHandler().ignoreTable(tableInfo.getTableName())));
+    }
+
+    /**
+     * 获取启动时注入的方法的 mapperStatementId, 没有注入时抛出异常
+     *
+     * @param configuration 配置
+     * @param mapper        mapper
+     * @param method        方法
+     * @return mapperStatementId
+     */
+    static String injectedStatement(Configuration configuration, Class<?> mapper, AbstractMethod method) {
+        String id = mapper.getName() + StringPool.DOT + method.getMethod(null);
+        if (!configuration.hasStatement(id, false)) {
+            throw ExceptionUtils.mpe("%s is not injected into %s, register %s (or add %s to your ISqlInjector) before the mapper is loaded",
+                method.getMethod(null), mapper.getName(), BatchSqlInjector.class.getName(), method.getClass().getSimpleName());
+        }
+        return id;
+    }
+
     /**
      * 获取mapperStatementId
      *
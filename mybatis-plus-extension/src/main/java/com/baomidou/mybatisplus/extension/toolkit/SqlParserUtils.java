@@ -32,4 +32,37 @@ public class SqlParserUtils {
     public static String getOriginalCountSql(String originalSql) {
         return String.format("SELECT COUNT(*) FROM (%s) TOTAL", originalSql);
     }
+
+    /**
+     * 统计 sql 中 [0, end) 范围内 jdbc 参数占位符的个数
+     * <p>
+     * 跳过字符串字面量及带引号的标识符中的 ?, 以及转义的 ??(例如 postgresql 的 jsonb 操作符 ??, ??|, ??&amp;)
+     * </p>
+     *
+     * @param sql sql
+     * @param end 结束下标(不含)
+     * @return 占位符个数
+     * @since 3.4.3
+     */
+    public static int countPlaceholders(String sql, int end) {
+        int count = 0;
+        char quote = 0;
+        for (int i = 0; i < end; i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '?') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '?') {
+                    i++;
+                } else {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
 }
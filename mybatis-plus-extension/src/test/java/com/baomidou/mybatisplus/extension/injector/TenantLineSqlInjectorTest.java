@@ -0,0 +1,89 @@
+package com.baomidou.mybatisplus.extension.injector;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.injector.DefaultSqlInjector;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserCache;
+import com.baomidou.mybatisplus.extension.plugins.handler.TenantLineHandler;
+import com.baomidou.mybatisplus.extension.plugins.inner.TenantLineInnerInterceptor;
+import lombok.Data;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author miemie
+ * @since 3.4.3
+ */
+class TenantLineSqlInjectorTest {
+
+    private long tenantId = 1;
+
+    private final TenantLineInnerInterceptor interceptor = new TenantLineInnerInterceptor(new TenantLineHandler() {
+        @Override
+        public Expression getTenantId() {
+            return new LongValue(tenantId);
+        }
+    }, true);
+
+    @Test
+    void inspectInject() {
+        JsqlParserCache sqlCache = new JsqlParserCache(16);
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        GlobalConfigUtils.getGlobalConfig(configuration).setSqlInjector(new TenantLineSqlInjector(new DefaultSqlInjector(), interceptor, sqlCache));
+        configuration.addMapper(EntityMapper.class);
+
+        MappedStatement selectById = configuration.getMappedStatement(EntityMapper.class.getName() + ".selectById");
+        assertThat(selectById.getSqlSource()).isInstanceOf(TenantLineSqlSource.class);
+        assertThat(interceptor.willInterceptExecutor(selectById)).isFalse();
+        BoundSql boundSql = selectById.getBoundSql(1L);
+        assertThat(boundSql.getSql()).isEqualTo("SELECT id, name FROM entity WHERE id = ? AND tenant_id = ?");
+        assertThat(boundSql.getParameterMappings()).extracting(ParameterMapping::getProperty)
+            .containsExactly("id", TenantLineInnerInterceptor.TENANT_ID_PARAMETER);
+        assertThat(boundSql.getAdditionalParameter(TenantLineInnerInterceptor.TENANT_ID_PARAMETER)).isEqualTo(1L);
+
+        // 改写结果与租户无关, 只解析一次
+        tenantId = 2;
+        boundSql = selectById.getBoundSql(1L);
+        assertThat(boundSql.getSql()).isEqualTo("SELECT id, name FROM entity WHERE id = ? AND tenant_id = ?");
+        assertThat(boundSql.getAdditionalParameter(TenantLineInnerInterceptor.TENANT_ID_PARAMETER)).isEqualTo(2L);
+        assertThat(sqlCache.stats().getMissCount()).isEqualTo(1);
+        assertThat(sqlCache.stats().getHitCount()).isEqualTo(1);
+
+        MappedStatement deleteById = configuration.getMappedStatement(EntityMapper.class.getName() + ".deleteById");
+        assertThat(deleteById.getBoundSql(1L).getSql()).isEqualTo("DELETE FROM entity WHERE tenant_id = ? AND id = ?");
+
+        // 手写的 sql 留给运行时的插件处理
+        MappedStatement selectByName = configuration.getMappedStatement(EntityMapper.class.getName() + ".selectByName");
+        assertThat(selectByName.getSqlSource()).isNotInstanceOf(TenantLineSqlSource.class);
+        assertThat(interceptor.willInterceptExecutor(selectByName)).isTrue();
+    }
+
+    @Test
+    void requireTenantIdAsParameter() {
+        assertThatThrownBy(() -> new TenantLineSqlInjector(new TenantLineInnerInterceptor(interceptor.getTenantLineHandler())))
+            .hasMessageContaining("tenantIdAsParameter");
+    }
+
+    @Data
+    public static class Entity {
+        private Long id;
+        private String name;
+    }
+
+    public interface EntityMapper extends BaseMapper<Entity> {
+
+        @Select("select * from entity where name = #{name}")
+        List<Entity> selectByName(String name);
+    }
+}
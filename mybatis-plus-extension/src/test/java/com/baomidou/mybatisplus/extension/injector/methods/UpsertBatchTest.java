@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.injector.methods;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableLogic;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.annotation.Version;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import lombok.Data;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author miemie
+ * @since 3.4.3
+ */
+class UpsertBatchTest {
+
+    @Test
+    void sql() {
+        // 已存在时不更新主键, 填充策略为 INSERT 或 UPDATE 的字段和逻辑删除字段; 逻辑删除字段为 null 时写入未删除值
+        // 乐观锁字段在原值上加 1
+        assertThat(sql(DbType.MYSQL)).isEqualTo("INSERT INTO u_entity (id,name,created,modified,version,deleted) VALUES (?,?,?,?,?, 0 ) , (?,?,?,?,?, ? ) ON DUPLICATE KEY UPDATE name=VALUES(name),version=version + 1");
+        assertThat(sql(DbType.POSTGRE_SQL)).isEqualTo("INSERT INTO u_entity (id,name,created,modified,version,deleted) VALUES (?,?,?,?,?, 0 ) , (?,?,?,?,?, ? ) ON CONFLICT (id) DO UPDATE SET name=EXCLUDED.name,version=u_entity.version + 1");
+        assertThat(sql(DbType.ORACLE)).isEqualTo("MERGE INTO u_entity t USING ( SELECT ? AS id,? AS name,? AS created,? AS modified,? AS version, 0 AS deleted FROM DUAL UNION ALL SELECT ? AS id,? AS name,? AS created,? AS modified,? AS version, ? AS deleted FROM DUAL ) s ON (t.id = s.id) WHEN MATCHED THEN UPDATE SET t.name=s.name,t.version=t.version + 1 WHEN NOT MATCHED THEN INSERT (id,name,created,modified,version,deleted) VALUES (s.id,s.name,s.created,s.modified,s.version,s.deleted)");
+        assertThat(sql(DbType.H2)).isEqualTo("MERGE INTO u_entity t USING (SELECT id,name,created,modified,version,deleted FROM u_entity WHERE 1 = 0 UNION ALL SELECT ? AS id,? AS name,? AS created,? AS modified,? AS version, 0 AS deleted FROM DUAL UNION ALL SELECT ? AS id,? AS name,? AS created,? AS modified,? AS version, ? AS deleted FROM DUAL ) s ON (t.id = s.id) WHEN MATCHED THEN UPDATE SET t.name=s.name,t.version=t.version + 1 WHEN NOT MATCHED THEN INSERT (id,name,created,modified,version,deleted) VALUES (s.id,s.name,s.created,s.modified,s.version,s.deleted)");
+        assertThat(sql(DbType.SQL_SERVER)).isEqualTo("MERGE INTO u_entity t USING (VALUES (?,?,?,?,?, 0 ) , (?,?,?,?,?, ? ) ) s (id,name,created,modified,version,deleted) ON (t.id = s.id) WHEN MATCHED THEN UPDATE SET t.name=s.name,t.version=t.version + 1 WHEN NOT MATCHED THEN INSERT (id,name,created,modified,version,deleted) VALUES (s.id,s.name,s.created,s.modified,s.version,s.deleted);");
+        assertThat(sql(DbType.SQL_SERVER2005)).isEqualTo(sql(DbType.SQL_SERVER));
+        assertThat(sql(DbType.DB2)).isEqualTo("MERGE INTO u_entity t USING (VALUES (?,?,?,?,?, 0 ) , (?,?,?,?,?, ? ) ) s (id,name,created,modified,version,deleted) ON (t.id = s.id) WHEN MATCHED THEN UPDATE SET t.name=s.name,t.version=t.version + 1 WHEN NOT MATCHED THEN INSERT (id,name,created,modified,version,deleted) VALUES (s.id,s.name,s.created,s.modified,s.version,s.deleted)");
+    }
+
+    @Test
+    void unsupported() {
+        assertThat(UpsertBatch.supports(DbType.PHOENIX)).isFalse();
+        assertThatThrownBy(() -> new UpsertBatch(DbType.SYBASE)).hasMessageContaining("sybase");
+    }
+
+    private String sql(DbType dbType) {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.addMapper(EntityMapper.class);
+        MapperBuilderAssistant builderAssistant = new MapperBuilderAssistant(configuration, "");
+        builderAssistant.setCurrentNamespace(EntityMapper.class.getName());
+        new UpsertBatch(dbType).inject(builderAssistant, EntityMapper.class, Entity.class, TableInfoHelper.getTableInfo(Entity.class));
+        MapperMethod.ParamMap<Object> param = new MapperMethod.ParamMap<>();
+        Entity deleted = new Entity();
+        deleted.setDeleted(1);
+        param.put("list", Arrays.asList(new Entity(), deleted));
+        return configuration.getMappedStatement(EntityMapper.class.getName() + ".upsertBatch").getBoundSql(param).getSql()
+            .replaceAll("\\s+", " ");
+    }
+
+    @Data
+    @TableName("u_entity")
+    public static class Entity {
+        private Long id;
+        private String name;
+        @TableField(fill = FieldFill.INSERT)
+        private String created;
+        @TableField(fill = FieldFill.UPDATE)
+        private String modified;
+        @Version
+        private Integer version;
+        @TableLogic
+        private Integer deleted;
+    }
+
+    public interface EntityMapper extends BaseMapper<Entity> {
+    }
+}
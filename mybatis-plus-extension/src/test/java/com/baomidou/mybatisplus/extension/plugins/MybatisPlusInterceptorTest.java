@@ -1,14 +1,27 @@
 package com.baomidou.mybatisplus.extension.plugins;
 
 import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.extension.plugins.inner.BlockAttackInnerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.OptimisticLockerInnerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.metrics.InnerInterceptorRecorder;
+import com.baomidou.mybatisplus.extension.plugins.metrics.MemoryInnerInterceptorRecorder;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 /**
  * @author miemie
@@ -36,4 +49,81 @@ class MybatisPlusInterceptorTest {
         assertThat(pii.getMaxLimit()).isEqualTo(10);
         assertThat(pii.getDbType()).isEqualTo(DbType.H2);
     }
+
+    @Test
+    void plan() {
+        PaginationInnerInterceptor page = new PaginationInnerInterceptor();
+        OptimisticLockerInnerInterceptor locker = new OptimisticLockerInnerInterceptor();
+        BlockAttackInnerInterceptor blockAttack = new BlockAttackInnerInterceptor();
+        InnerInterceptorPlan plan = InnerInterceptorPlan.of(Arrays.asList(page, locker, blockAttack));
+        assertThat(plan.query).containsExactly(page);
+        assertThat(plan.update).containsExactly(page, locker);
+        assertThat(plan.prepare).containsExactly(blockAttack);
+        assertThat(plan.getBoundSql).isEmpty();
+        assertThat(plan.completion).containsExactly(page);
+
+        InnerInterceptorPlan select = plan.of(mappedStatement("com.baomidou.TestMapper.select", SqlCommandType.SELECT));
+        assertThat(select.query).containsExactly(page);
+        assertThat(select.prepare).isEmpty();
+
+        InnerInterceptorPlan update = plan.of(mappedStatement("com.baomidou.TestMapper.update", SqlCommandType.UPDATE));
+        // 写操作需要经过分页插件使 count 缓存失效, 与何时开启 count 缓存无关
+        assertThat(update.update).containsExactly(page, locker);
+        assertThat(update.prepare).containsExactly(blockAttack);
+
+        InnerInterceptorPlan delete = plan.of(mappedStatement("com.baomidou.TestMapper.delete", SqlCommandType.DELETE));
+        assertThat(delete.update).containsExactly(page);
+        assertThat(delete.prepare).containsExactly(blockAttack);
+    }
+
+    @Test
+    void recorder() throws Throwable {
+        MemoryInnerInterceptorRecorder recorder = new MemoryInnerInterceptorRecorder();
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.setRecorder(recorder);
+        interceptor.addInnerInterceptor(new OptimisticLockerInnerInterceptor());
+        MappedStatement ms = mappedStatement("com.baomidou.TestMapper.update", SqlCommandType.UPDATE);
+        Executor executor = mock(Executor.class);
+        for (int i = 0; i < 3; i++) {
+            interceptor.intercept(new Invocation(executor, Executor.class.getMethod("update", MappedStatement.class, Object.class),
+                new Object[]{ms, null}));
+        }
+
+        List<MemoryInnerInterceptorRecorder.Snapshot> snapshots = recorder.snapshot();
+        assertThat(snapshots).extracting(MemoryInnerInterceptorRecorder.Snapshot::getPhase)
+            .containsExactlyInAnyOrder(InnerInterceptorRecorder.Phase.WILL_DO_UPDATE, InnerInterceptorRecorder.Phase.BEFORE_UPDATE);
+        assertThat(snapshots).allSatisfy(snapshot -> {
+            assertThat(snapshot.getInterceptor()).isEqualTo(OptimisticLockerInnerInterceptor.class.getName());
+            assertThat(snapshot.getMsId()).isEqualTo("com.baomidou.TestMapper.update");
+            assertThat(snapshot.getCount()).isEqualTo(3);
+            assertThat(snapshot.getP50Nanos()).isLessThanOrEqualTo(snapshot.getP99Nanos());
+            assertThat(snapshot.getP99Nanos()).isLessThanOrEqualTo(snapshot.getMaxNanos());
+        });
+
+        recorder.reset();
+        assertThat(recorder.snapshot()).isEmpty();
+    }
+
+    @Test
+    void setInterceptors() {
+        PaginationInnerInterceptor page = new PaginationInnerInterceptor();
+        List<InnerInterceptor> interceptors = new ArrayList<>();
+        interceptors.add(page);
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.setInterceptors(interceptors);
+        // 之后修改传入的 list 不影响插件
+        interceptors.add(new BlockAttackInnerInterceptor());
+        assertThat(interceptor.getInterceptors()).containsExactly(page);
+
+        // 按 MappedStatement 的计划缓存在计划内, 随计划一起替换
+        InnerInterceptorPlan plan = InnerInterceptorPlan.of(interceptors);
+        MappedStatement ms = mappedStatement("com.baomidou.TestMapper.update", SqlCommandType.UPDATE);
+        assertThat(plan.plan(ms)).isSameAs(plan.plan(ms));
+        assertThat(InnerInterceptorPlan.of(interceptors).plan(ms)).isNotSameAs(plan.plan(ms));
+    }
+
+    private MappedStatement mappedStatement(String id, SqlCommandType sqlCommandType) {
+        Configuration configuration = new Configuration();
+        return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "sql"), sqlCommandType).build();
+    }
 }
@@ -1,14 +1,17 @@
 package com.baomidou.mybatisplus.extension.plugins.inner;
 
+import com.baomidou.mybatisplus.core.toolkit.TableNameParser;
 import com.baomidou.mybatisplus.extension.plugins.handler.TableNameHandler;
 import org.intellij.lang.annotations.Language;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * 动态表名内部拦截器测试
@@ -47,6 +50,38 @@ class DynamicTableNameInnerInterceptorTest {
         assertEquals(origin, interceptor.changeTable(origin));
     }
 
+    /**
+     * 同一条 SQL 复用缓存的表名位置
+     */
+    @Test
+    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+    void tableNameCache() {
+        DynamicTableNameInnerInterceptor interceptor = new DynamicTableNameInnerInterceptor(newTableNameHandlerMap());
+        interceptor.setTableNameCacheSize(1);
+        @Language("SQL")
+        String origin = "SELECT * FROM t_user WHERE id IN (SELECT user_id FROM t_user_role)";
+        String replaced = "SELECT * FROM t_user_r WHERE id IN (SELECT user_id FROM t_user_role)";
+        assertSame(interceptor.tableNames(origin), interceptor.tableNames(origin));
+        assertEquals(replaced, interceptor.changeTable(origin));
+        assertEquals(replaced, interceptor.changeTable(origin));
+        // 超出容量后淘汰最早写入的
+        List<TableNameParser.SqlToken> cached = interceptor.tableNames(origin);
+        String update = "UPDATE t_user SET name = ?";
+        assertEquals("UPDATE t_user_r SET name = ?", interceptor.changeTable(update));
+        assertSame(interceptor.tableNames(update), interceptor.tableNames(update));
+        assertEquals(1, interceptor.cachedTableNamesCount());
+        assertNotSame(cached, interceptor.tableNames(origin));
+        assertEquals(replaced, interceptor.changeTable(origin));
+        // 并发写入后缓存条数不超过容量
+        interceptor.setTableNameCacheSize(4);
+        IntStream.range(0, 1000).parallel().forEach(i -> interceptor.tableNames("SELECT * FROM t_user WHERE id = " + i));
+        assertEquals(4, interceptor.cachedTableNamesCount());
+
+        interceptor.setTableNameCacheSize(0);
+        assertNotSame(interceptor.tableNames(origin), interceptor.tableNames(origin));
+        assertEquals(replaced, interceptor.changeTable(origin));
+    }
+
     /**
      * 替换以下表名：
      * t_user -> t_user_r
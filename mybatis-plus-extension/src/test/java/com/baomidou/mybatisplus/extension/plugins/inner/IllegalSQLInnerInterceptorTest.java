@@ -0,0 +1,76 @@
+package com.baomidou.mybatisplus.extension.plugins.inner;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import lombok.Data;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * @author miemie
+ * @since 3.4.3
+ */
+class IllegalSQLInnerInterceptorTest {
+
+    @Test
+    void indexInfoLoader() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:illegal_sql;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table illegal_entity (id bigint primary key, name varchar(30), age int)");
+            statement.execute("create index idx_illegal_entity_name on illegal_entity (name)");
+        }
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), IllegalEntity.class);
+
+        IllegalSQLInnerInterceptor interceptor = new IllegalSQLInnerInterceptor();
+        interceptor.loadIndexInfos(dataSource);
+
+        // 预热后检查不再访问数据库
+        Connection connection = mock(Connection.class);
+        interceptor.parserSingle("select * from illegal_entity where name = ?", connection);
+        interceptor.parserSingle("update illegal_entity set age = ? where id = ?", connection);
+        assertThatThrownBy(() -> interceptor.parserSingle("select * from illegal_entity where age = ?", connection))
+            .isInstanceOf(MybatisPlusException.class);
+        verifyNoInteractions(connection);
+
+        // 后台定时刷新, 新建的索引被加载
+        try (Connection c = dataSource.getConnection(); Statement statement = c.createStatement()) {
+            statement.execute("create index idx_illegal_entity_age on illegal_entity (age)");
+        }
+        interceptor.startIndexInfoLoader(dataSource, 20, TimeUnit.MILLISECONDS);
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (true) {
+                try {
+                    interceptor.parserSingle("select * from illegal_entity where age = ?", connection);
+                    break;
+                } catch (MybatisPlusException e) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw e;
+                    }
+                    Thread.sleep(20);
+                }
+            }
+        } finally {
+            interceptor.stopIndexInfoLoader();
+        }
+        verifyNoInteractions(connection);
+    }
+
+    @Data
+    public static class IllegalEntity {
+        private Long id;
+        private String name;
+        private Integer age;
+    }
+}
@@ -1,11 +1,54 @@
 package com.baomidou.mybatisplus.extension.plugins.inner;
 
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
 import com.baomidou.mybatisplus.core.metadata.OrderItem;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.pagination.CountCache;
+import com.baomidou.mybatisplus.extension.plugins.pagination.KeysetPage;
+import com.baomidou.mybatisplus.extension.toolkit.SqlParserUtils;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.plugins.pagination.dialects.IDialect;
+import com.baomidou.mybatisplus.extension.plugins.pagination.dialects.MySqlDialect;
+import com.baomidou.mybatisplus.extension.plugins.pagination.dialects.PostgreDialect;
+import lombok.Data;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.mapping.*;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.apache.ibatis.transaction.Transaction;
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Arrays;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
 
 /**
  * @author miemie
@@ -85,6 +128,502 @@ class PaginationInnerInterceptorTest {
             "SELECT COUNT(*) FROM reseller r");
     }
 
+    @Test
+    void sqlCache() {
+        PaginationInnerInterceptor interceptor = new PaginationInnerInterceptor();
+        String sql = "select * from user u LEFT JOIN role r ON r.id = u.role_id ORDER BY u.id";
+        for (int i = 0; i < 2; i++) {
+            assertThat(interceptor.cachedAutoCountSql(true, sql)).isEqualTo("SELECT COUNT(*) FROM user u");
+            assertThat(interceptor.cachedConcatOrderBy(sql, Arrays.asList(OrderItem.desc("u.name"), OrderItem.asc("u.age"))))
+                .isEqualTo("SELECT * FROM user u LEFT JOIN role r ON r.id = u.role_id ORDER BY u.name DESC, u.age ASC, u.id");
+        }
+        assertThat(interceptor.cachedConcatOrderBy(sql, Collections.singletonList(OrderItem.asc("u.name"))))
+            .isEqualTo("SELECT * FROM user u LEFT JOIN role r ON r.id = u.role_id ORDER BY u.name ASC, u.id");
+        assertThat(interceptor.getSqlCache().stats().getHitCount()).isEqualTo(2);
+        assertThat(interceptor.getSqlCache().size()).isEqualTo(3);
+    }
+
+    @Test
+    void findIDialect() throws SQLException {
+        Executor h2 = executor("jdbc:h2:mem:dialect");
+        Executor mysql = executor("jdbc:mysql://localhost:3306/dialect");
+        IDialect dialect = interceptor.findIDialect(h2);
+        assertThat(dialect).isInstanceOf(PostgreDialect.class);
+        assertThat(interceptor.findIDialect(h2)).isSameAs(dialect);
+        assertThat(interceptor.findIDialect(mysql)).isInstanceOf(MySqlDialect.class);
+        assertThat(new PaginationInnerInterceptor().findIDialect(h2)).isSameAs(dialect);
+    }
+
+    @Test
+    void keyset() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:keyset;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table k_order (id bigint primary key, created int)");
+                for (int i = 1; i <= 23; i++) {
+                    statement.execute("insert into k_order values (" + i + ", " + (i * 7 % 5) + ")");
+                }
+            }
+            // 行值比较
+            assertKeyset(connection, OrderItem.asc("created"), OrderItem.asc("id"));
+            assertKeyset(connection, OrderItem.desc("created"), OrderItem.desc("id"));
+            // 展开
+            assertKeyset(connection, OrderItem.desc("created"), OrderItem.asc("id"));
+            assertKeyset(connection, OrderItem.desc("id"));
+        }
+
+        PaginationInnerInterceptor interceptor = new PaginationInnerInterceptor(DbType.ORACLE);
+        KeysetPage<long[]> page = new KeysetPage<long[]>(5).addOrder(OrderItem.asc("created"), OrderItem.asc("id")).after(1, 2);
+        BoundSql boundSql = beforeQuery(interceptor, page, "SELECT * FROM k_order WHERE id > ? OR id < ?");
+        assertThat(boundSql.getSql()).contains("WHERE (id > ? OR id < ?) AND ((created > ?) OR (created = ? AND id > ?)) ORDER BY created ASC, id ASC");
+        assertThat(boundSql.getParameterMappings()).extracting(ParameterMapping::getProperty)
+            .startsWith("minId", "minId", "mybatis_plus_keyset_0", "mybatis_plus_keyset_0", "mybatis_plus_keyset_1");
+
+        // 字面量, 带引号的标识符中的 ? 以及转义的 ?? 不是占位符
+        assertThat(SqlParserUtils.countPlaceholders("data ?? 'k' AND data ??| ? AND name = 'it''s?'", 46)).isEqualTo(1);
+        boundSql = beforeQuery(interceptor, page, "SELECT * FROM k_order WHERE name = 'a?b' AND \"x?\" = ? OR id < ?");
+        assertThat(boundSql.getParameterMappings()).extracting(ParameterMapping::getProperty)
+            .startsWith("minId", "minId", "mybatis_plus_keyset_0", "mybatis_plus_keyset_0", "mybatis_plus_keyset_1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countCache() throws SQLException {
+        PaginationInnerInterceptor interceptor = new PaginationInnerInterceptor(DbType.H2);
+        CountCache countCache = new CountCache(16, 60_000);
+        interceptor.setCountCache(countCache);
+        Executor executor = executor("jdbc:h2:mem:count_cache");
+        when(executor.createCacheKey(any(), any(), any(), any())).thenAnswer(i -> new CacheKey(new Object[]{((BoundSql) i.getArgument(3)).getSql()}));
+        when(executor.query(any(), any(), any(), any(), any(), any())).thenReturn(Collections.singletonList(42L));
+
+        Configuration configuration = new MybatisConfiguration();
+        MappedStatement select = new MappedStatement.Builder(configuration, "com.baomidou.UserMapper.selectPage",
+            new StaticSqlSource(configuration, "SELECT * FROM user WHERE age > 1"), SqlCommandType.SELECT).build();
+        for (int i = 1; i <= 3; i++) {
+            Page<Object> page = new Page<>(i, 10);
+            BoundSql boundSql = select.getBoundSql(page);
+            assertThat(interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, boundSql)).isTrue();
+            assertThat(page.getTotal()).isEqualTo(42L);
+        }
+        verify(executor, times(1)).query(any(), any(), any(), any(), any(), any());
+
+        // 写其他表不失效
+        interceptor.beforeUpdate(executor, new MappedStatement.Builder(configuration, "com.baomidou.RoleMapper.insert",
+            new StaticSqlSource(configuration, "INSERT INTO role (id) VALUES (?)"), SqlCommandType.INSERT).build(), null);
+        Page<Object> page = new Page<>(1, 10);
+        interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+        verify(executor, times(1)).query(any(), any(), any(), any(), any(), any());
+
+        MappedStatement delete = new MappedStatement.Builder(configuration, "com.baomidou.UserMapper.delete",
+            new StaticSqlSource(configuration, "DELETE FROM `USER` WHERE id = ?"), SqlCommandType.DELETE).build();
+        interceptor.beforeUpdate(executor, delete, null);
+        interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+        verify(executor, times(2)).query(any(), any(), any(), any(), any(), any());
+        // 写事务结束前不缓存
+        interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+        verify(executor, times(3)).query(any(), any(), any(), any(), any(), any());
+
+        interceptor.afterCompletion(executor.getTransaction());
+        interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+        interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+        verify(executor, times(4)).query(any(), any(), any(), any(), any(), any());
+
+        // spring 事务在 afterCompletion 时结束
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            interceptor.beforeUpdate(executor, delete, null);
+            interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+            interceptor.afterCompletion(executor.getTransaction());
+            interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+            verify(executor, times(6)).query(any(), any(), any(), any(), any(), any());
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+        interceptor.willDoQuery(executor, select, page, RowBounds.DEFAULT, null, select.getBoundSql(page));
+        verify(executor, times(7)).query(any(), any(), any(), any(), any(), any());
+
+        assertThat(countCache.stats().getHitCount()).isEqualTo(5);
+        assertThat(countCache.stats().getMissCount()).isEqualTo(7);
+    }
+
+    @Test
+    void countCacheWriteCompletion() throws Throwable {
+        PaginationInnerInterceptor pagination = new PaginationInnerInterceptor(DbType.H2);
+        MybatisPlusInterceptor plugin = new MybatisPlusInterceptor();
+        plugin.addInnerInterceptor(pagination);
+        Configuration configuration = new MybatisConfiguration();
+        MappedStatement delete = new MappedStatement.Builder(configuration, "com.baomidou.UserMapper.delete",
+            new StaticSqlSource(configuration, "DELETE FROM user WHERE id = ?"), SqlCommandType.DELETE).build();
+        Executor executor = executor("jdbc:h2:mem:count_cache_plugin");
+        Executor proxy = (Executor) plugin.plugin(executor);
+        // 先执行过写操作再开启缓存也生效
+        proxy.update(delete, null);
+        CountCache countCache = spy(new CountCache(16, 60_000));
+        pagination.setCountCache(countCache);
+        proxy.update(delete, null);
+        verify(countCache).beginWrite(executor.getTransaction(), "DELETE FROM user WHERE id = ?");
+        proxy.commit(true);
+        verify(countCache).endWrite(executor.getTransaction());
+    }
+
+    @Test
+    void concurrentCount() throws Exception {
+        AtomicInteger submitted = new AtomicInteger();
+        ExecutorService countExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                submitted.incrementAndGet();
+            }
+        };
+        PaginationInnerInterceptor pagination = new PaginationInnerInterceptor(DbType.H2);
+        pagination.setCountExecutor(countExecutor);
+        DefaultSqlSessionFactory factory = sqlSessionFactory("concurrent_count", pagination);
+        try {
+            // 自动提交: 并发 count
+            try (SqlSession session = factory.openSession(true)) {
+                Page<Long> page = new Page<>(2, 5);
+                List<Long> list = session.selectList("com.baomidou.CountMapper.select", page);
+                assertThat(list).containsExactly(7L, 8L, 9L, 10L, 11L);
+                assertThat(page.getTotal()).isEqualTo(11L);
+
+                page = new Page<>(4, 5);
+                assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).isEmpty();
+                assertThat(page.getTotal()).isEqualTo(11L);
+            }
+            assertThat(submitted).hasValue(2);
+            // 事务中: 先 count 再查询
+            try (SqlSession session = factory.openSession(false)) {
+                Page<Long> page = new Page<>(3, 5);
+                assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).containsExactly(12L);
+                assertThat(page.getTotal()).isEqualTo(11L);
+            }
+            assertThat(submitted).hasValue(2);
+        } finally {
+            countExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentCountTimeout() throws Exception {
+        ExecutorService countExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        // 占住线程池模拟拿不到连接
+        countExecutor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        PaginationInnerInterceptor pagination = new PaginationInnerInterceptor(DbType.H2);
+        pagination.setCountExecutor(countExecutor);
+        pagination.setCountTimeout(50L);
+        DefaultSqlSessionFactory factory = sqlSessionFactory("concurrent_count_timeout", pagination);
+        Page<Long> page = new Page<>(2, 5);
+        try (SqlSession session = factory.openSession(true)) {
+            assertThatThrownBy(() -> session.selectList("com.baomidou.CountMapper.select", page))
+                .hasRootCauseInstanceOf(TimeoutException.class);
+        } finally {
+            latch.countDown();
+            countExecutor.shutdown();
+        }
+        assertThat(countExecutor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        // 超时后取消, 排队中的 count 不再执行
+        assertThat(page.getTotal()).isEqualTo(0L);
+    }
+
+    @Test
+    void estimateAndCountLimit() throws SQLException {
+        DefaultSqlSessionFactory factory = sqlSessionFactory("count_limit", new PaginationInnerInterceptor(DbType.H2));
+        try (SqlSession session = factory.openSession(true)) {
+            Page<Long> page = new Page<>(1, 3);
+            page.setCountLimit(5L);
+            assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).containsExactly(2L, 3L, 4L);
+            assertThat(page.getTotal()).isEqualTo(5L);
+            assertThat(page.totalExact()).isFalse();
+
+            page = new Page<>(1, 3);
+            page.setCountLimit(20L);
+            session.selectList("com.baomidou.CountMapper.select", page);
+            assertThat(page.getTotal()).isEqualTo(11L);
+            assertThat(page.totalExact()).isTrue();
+
+            // h2 的执行计划没有估算行数, 退化为 count
+            page = new Page<Long>(1, 3).setEstimateCount(true);
+            session.selectList("com.baomidou.CountMapper.select", page);
+            assertThat(page.getTotal()).isEqualTo(11L);
+            assertThat(page.totalExact()).isTrue();
+        }
+
+        // postgresql 取根节点的 rows
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true);
+        when(rs.getString(1)).thenReturn("Seq Scan on c_user  (cost=0.00..35.50 rows=1234 width=8)");
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(rs);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement("EXPLAIN SELECT id FROM c_user")).thenReturn(statement);
+        assertThat(new PostgreDialect().estimateCount(connection, "SELECT id FROM c_user", mock(ParameterHandler.class))).isEqualTo(1234L);
+    }
+
+    @Test
+    void estimateInTransaction() throws SQLException {
+        Configuration configuration = new MybatisConfiguration();
+        MappedStatement select = new MappedStatement.Builder(configuration, "com.baomidou.UserMapper.selectPage",
+            new StaticSqlSource(configuration, "SELECT * FROM user WHERE name = '?' AND age > ?"), SqlCommandType.SELECT).build();
+        Page<Object> page = new Page<>(1, 10);
+        BoundSql boundSql = select.getBoundSql(page);
+
+        // 事务中估算失败, 回滚到保存点后退化为 count
+        PaginationInnerInterceptor interceptor = new PaginationInnerInterceptor();
+        interceptor.setDialect(new PostgreDialect() {
+            @Override
+            public Long estimateCount(Connection connection, String originalSql, ParameterHandler parameterHandler) throws SQLException {
+                throw new SQLException("explain failed");
+            }
+        });
+        Executor executor = executor("jdbc:postgresql://localhost:5432/estimate");
+        Connection connection = executor.getTransaction().getConnection();
+        Savepoint savepoint = mock(Savepoint.class);
+        when(connection.setSavepoint()).thenReturn(savepoint);
+        assertThat(interceptor.estimateCount(executor, select, page, boundSql)).isNull();
+        verify(connection).rollback(savepoint);
+
+        // 自动提交时不设置保存点
+        executor = executor("jdbc:postgresql://localhost:5432/estimate");
+        connection = executor.getTransaction().getConnection();
+        when(connection.getAutoCommit()).thenReturn(true);
+        assertThat(interceptor.estimateCount(executor, select, page, boundSql)).isNull();
+        verify(connection, never()).setSavepoint();
+
+        // 不支持保存点时不估算
+        executor = executor("jdbc:postgresql://localhost:5432/estimate");
+        connection = executor.getTransaction().getConnection();
+        when(connection.setSavepoint()).thenThrow(new SQLFeatureNotSupportedException());
+        assertThat(interceptor.estimateCount(executor, select, page, boundSql)).isNull();
+        verify(connection, never()).prepareStatement(anyString());
+
+        // oracle 的 ? 换成绑定变量, 引号中的不变, 写入 PLAN_TABLE 的数据在保存点回滚
+        executor = executor("jdbc:oracle:thin:@localhost:1521:estimate");
+        connection = executor.getTransaction().getConnection();
+        when(connection.setSavepoint()).thenReturn(savepoint);
+        Statement explain = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(explain);
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true);
+        when(rs.getLong(1)).thenReturn(321L);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(rs);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        assertThat(new PaginationInnerInterceptor().estimateCount(executor, select, page, boundSql)).isEqualTo(321L);
+        verify(explain).execute(argThat((String sql) -> sql.endsWith(" FOR SELECT * FROM user WHERE name = '?' AND age > :1")));
+        verify(connection).rollback(savepoint);
+    }
+
+    @Test
+    void searchHasNext() throws SQLException {
+        DefaultSqlSessionFactory factory = sqlSessionFactory("has_next", new PaginationInnerInterceptor(DbType.H2));
+        try (SqlSession session = factory.openSession(true)) {
+            for (int i = 0; i < 2; i++) {
+                // 第二次命中一级缓存, 结果不能被上一次的裁剪影响
+                Page<Long> page = new Page<Long>(1, 5).setSearchHasNext(true);
+                assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).containsExactly(2L, 3L, 4L, 5L, 6L);
+                assertThat(page.hasNext()).isTrue();
+                assertThat(page.getTotal()).isZero();
+            }
+
+            Page<Long> page = new Page<Long>(3, 5).setSearchHasNext(true);
+            assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).containsExactly(12L);
+            assertThat(page.hasNext()).isFalse();
+
+            page = new Page<Long>(1, 11).setSearchHasNext(true);
+            assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).hasSize(11);
+            assertThat(page.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void lazyCount() throws SQLException {
+        AtomicInteger counted = new AtomicInteger();
+        PaginationInnerInterceptor pagination = new PaginationInnerInterceptor(DbType.H2) {
+            @Override
+            protected long queryCount(Executor executor, MappedStatement countMs, Object parameter, RowBounds rowBounds,
+                                      ResultHandler resultHandler, CacheKey cacheKey, BoundSql countSql) throws SQLException {
+                counted.incrementAndGet();
+                return super.queryCount(executor, countMs, parameter, rowBounds, resultHandler, cacheKey, countSql);
+            }
+        };
+        pagination.setLazyCount(true);
+        DefaultSqlSessionFactory factory = sqlSessionFactory("lazy_count", pagination);
+        try (SqlSession session = factory.openSession(true)) {
+            // 第一页不满一页, 不 count
+            Page<Long> page = new Page<>(1, 20);
+            assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).hasSize(11);
+            assertThat(page.getTotal()).isEqualTo(11);
+            assertThat(counted).hasValue(0);
+
+            // 第一页满一页, 查询后补上 count
+            page = new Page<>(1, 5);
+            assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).containsExactly(2L, 3L, 4L, 5L, 6L);
+            assertThat(page.getTotal()).isEqualTo(11);
+            assertThat(counted).hasValue(1);
+
+            // 不是第一页照常先 count
+            page = new Page<>(3, 5);
+            assertThat(session.<Long>selectList("com.baomidou.CountMapper.select", page)).containsExactly(12L);
+            assertThat(page.getTotal()).isEqualTo(11);
+            assertThat(counted).hasValue(2);
+        }
+    }
+
+    @Test
+    void deferredJoin() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:deferred_join;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table d_user (id bigint primary key, name varchar(30), age int)");
+            for (int i = 1; i <= 30; i++) {
+                statement.execute("insert into d_user values (" + i + ", 'u" + i + "', " + (i % 7) + ")");
+            }
+        }
+        Configuration configuration = new MybatisConfiguration();
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(configuration, ""), DeferredUser.class);
+
+        PaginationInnerInterceptor pagination = new PaginationInnerInterceptor(DbType.MYSQL);
+        pagination.setDeferredJoinOffset(10L);
+        assertThat(pagination.deferredJoin("SELECT * FROM d_user u WHERE age > ? ORDER BY age DESC, id").wrap("INNER"))
+            .isEqualTo("SELECT u.* FROM d_user u INNER JOIN (INNER) MP_DJ ON u.id = MP_DJ.MP_DJ_KEY ORDER BY age DESC, id");
+        assertThat(pagination.deferredJoin("SELECT * FROM d_user u LEFT JOIN role r ON r.id = u.role_id")).isNull();
+        assertThat(pagination.deferredJoin("SELECT * FROM unknown_table")).isNull();
+
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(pagination);
+        configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addInterceptor(interceptor);
+        configuration.addMappedStatement(new MappedStatement.Builder(configuration, "com.baomidou.DeferredMapper.select",
+            new StaticSqlSource(configuration, "SELECT * FROM d_user WHERE age > ? ORDER BY age DESC, id",
+                Collections.singletonList(new ParameterMapping.Builder(configuration, "minAge", Object.class).build())), SqlCommandType.SELECT)
+            .resultMaps(Collections.singletonList(new ResultMap.Builder(configuration, "user", DeferredUser.class, Collections.emptyList()).build()))
+            .build());
+        List<Long> expected = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id FROM d_user WHERE age > 1 ORDER BY age DESC, id LIMIT 5 OFFSET 15")) {
+            while (rs.next()) {
+                expected.add(rs.getLong(1));
+            }
+        }
+        try (SqlSession session = new DefaultSqlSessionFactory(configuration).openSession(true)) {
+            Map<String, Object> parameter = new HashMap<>();
+            parameter.put("page", new Page<>(4, 5));
+            parameter.put("minAge", 1);
+            List<DeferredUser> users = session.selectList("com.baomidou.DeferredMapper.select", parameter);
+            assertThat(users).extracting(DeferredUser::getId).containsExactlyElementsOf(expected);
+            assertThat(users).allSatisfy(u -> assertThat(u.getName()).isEqualTo("u" + u.getId()));
+        }
+    }
+
+    @Data
+    @TableName("d_user")
+    public static class DeferredUser {
+        private Long id;
+        private String name;
+        private Integer age;
+    }
+
+    private DefaultSqlSessionFactory sqlSessionFactory(String db, PaginationInnerInterceptor pagination) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + db + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table c_user (id bigint primary key)");
+            for (int i = 1; i <= 12; i++) {
+                statement.execute("insert into c_user values (" + i + ")");
+            }
+        }
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(pagination);
+
+        Configuration configuration = new MybatisConfiguration();
+        configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addInterceptor(interceptor);
+        configuration.addMappedStatement(new MappedStatement.Builder(configuration, "com.baomidou.CountMapper.select",
+            new StaticSqlSource(configuration, "SELECT id FROM c_user WHERE id > 1 ORDER BY id"), SqlCommandType.SELECT)
+            .resultMaps(Collections.singletonList(new ResultMap.Builder(configuration, "count", Long.class, Collections.emptyList()).build()))
+            .build());
+        return new DefaultSqlSessionFactory(configuration);
+    }
+
+    private void assertKeyset(Connection connection, OrderItem... orders) throws SQLException {
+        List<long[]> all = new ArrayList<>();
+        StringJoiner orderBy = new StringJoiner(", ");
+        for (OrderItem order : orders) {
+            orderBy.add(order.getColumn() + (order.isAsc() ? " ASC" : " DESC"));
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, created FROM k_order WHERE id > 0 ORDER BY " + orderBy)) {
+            while (rs.next()) {
+                all.add(new long[]{rs.getLong(1), rs.getLong(2)});
+            }
+        }
+
+        PaginationInnerInterceptor interceptor = new PaginationInnerInterceptor(DbType.H2);
+        List<long[]> scrolled = new ArrayList<>();
+        KeysetPage<long[]> page = new KeysetPage<long[]>(5, r -> Arrays.stream(orders)
+            .map(o -> "id".equals(o.getColumn()) ? r[0] : r[1]).toArray()).addOrder(orders);
+        while (page != null) {
+            BoundSql boundSql = beforeQuery(interceptor, page, "SELECT id, created FROM k_order WHERE id > ?");
+            List<long[]> records = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(boundSql.getSql())) {
+                List<ParameterMapping> mappings = boundSql.getParameterMappings();
+                for (int i = 0; i < mappings.size(); i++) {
+                    String property = mappings.get(i).getProperty();
+                    statement.setObject(i + 1, boundSql.hasAdditionalParameter(property)
+                        ? boundSql.getAdditionalParameter(property) : 0L);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        records.add(new long[]{rs.getLong(1), rs.getLong(2)});
+                    }
+                }
+            }
+            page.setRecords(records);
+            scrolled.addAll(records);
+            page = page.next();
+        }
+        assertThat(scrolled).containsExactlyElementsOf(all);
+    }
+
+    private BoundSql beforeQuery(PaginationInnerInterceptor interceptor, KeysetPage<long[]> page, String sql) throws SQLException {
+        Configuration configuration = new MybatisConfiguration();
+        MappedStatement ms = new MappedStatement.Builder(configuration, "com.baomidou.KeysetMapper.select",
+            new StaticSqlSource(configuration, sql), SqlCommandType.SELECT).build();
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("page", page);
+        parameter.put("minId", 0L);
+        List<ParameterMapping> mappings = new ArrayList<>();
+        for (int i = SqlParserUtils.countPlaceholders(sql, sql.length()); i > 0; i--) {
+            mappings.add(new ParameterMapping.Builder(configuration, "minId", Object.class).build());
+        }
+        BoundSql boundSql = new BoundSql(configuration, sql, mappings, parameter);
+        interceptor.beforeQuery(null, ms, parameter, RowBounds.DEFAULT, null, boundSql);
+        return boundSql;
+    }
+
+    private Executor executor(String url) throws SQLException {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getURL()).thenReturn(url);
+        Connection connection = mock(Connection.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        Transaction transaction = mock(Transaction.class);
+        when(transaction.getConnection()).thenReturn(connection);
+        Executor executor = mock(Executor.class);
+        when(executor.getTransaction()).thenReturn(transaction);
+        return executor;
+    }
+
     void assertsCountSql(String sql, String targetSql) {
         assertThat(interceptor.autoCountSql(true, sql)).isEqualTo(targetSql);
     }
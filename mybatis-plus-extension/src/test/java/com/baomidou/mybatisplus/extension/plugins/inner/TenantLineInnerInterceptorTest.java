@@ -1,11 +1,24 @@
 package com.baomidou.mybatisplus.extension.plugins.inner;
 
+import com.baomidou.mybatisplus.extension.parser.JsqlParserCache;
+import com.baomidou.mybatisplus.extension.parser.JsqlParserContext;
+import com.baomidou.mybatisplus.extension.parser.SingleTableSql;
 import com.baomidou.mybatisplus.extension.plugins.handler.TenantLineHandler;
+import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.session.Configuration;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * @author miemie
@@ -211,6 +224,159 @@ class TenantLineInnerInterceptorTest {
             "WITH with_as_A AS (SELECT * FROM entity WHERE tenant_id = 1) SELECT * FROM with_as_A");
     }
 
+    @Test
+    void sharedParserContext() {
+        TenantLineInnerInterceptor other = new TenantLineInnerInterceptor(new TenantLineHandler() {
+            @Override
+            public Expression getTenantId() {
+                return new LongValue(2);
+            }
+
+            @Override
+            public String getTenantIdColumn() {
+                return "org_id";
+            }
+        });
+        BoundSql boundSql = new BoundSql(new Configuration(), "select * from entity where id = ?", Collections.emptyList(), null);
+        JsqlParserContext context = JsqlParserContext.open();
+        try {
+            interceptor.processSingle(boundSql, null);
+            other.processSingle(boundSql, null);
+            // 链结束前不回写
+            assertThat(boundSql.getSql()).isEqualTo("select * from entity where id = ?");
+            // 纯文本解析不会复用已被修改的 Statement, 也不会影响它
+            assertThat(interceptor.parserSingle(boundSql.getSql(), null))
+                .isEqualTo("SELECT * FROM entity WHERE id = ? AND tenant_id = 1");
+        } finally {
+            context.close();
+        }
+        assertThat(JsqlParserContext.current()).isNull();
+        assertThat(boundSql.getSql()).isEqualTo("SELECT * FROM entity WHERE id = ? AND tenant_id = 1 AND org_id = 2");
+    }
+
+    @Test
+    void sqlCache() {
+        TenantLineInnerInterceptor cached = new TenantLineInnerInterceptor(interceptor.getTenantLineHandler());
+        JsqlParserCache cache = new JsqlParserCache(1);
+        cached.setSqlCache(cache);
+        String sql = "select * from entity where id = ?";
+        String target = "SELECT * FROM entity WHERE id = ? AND tenant_id = 1";
+        assertThat(cached.parserSingle(sql, null)).isEqualTo(target);
+        assertThat(cached.parserSingle(sql, null)).isEqualTo(target);
+        assertThat(cached.parserSingle("delete from entity where id = ?", null))
+            .isEqualTo("DELETE FROM entity WHERE tenant_id = 1 AND id = ?");
+        assertThat(cached.parserSingle(sql, null)).isEqualTo(target);
+
+        JsqlParserCache.Stats stats = cache.stats();
+        assertThat(stats.getHitCount()).isEqualTo(1);
+        assertThat(stats.getMissCount()).isEqualTo(3);
+        assertThat(stats.getEvictionCount()).isEqualTo(2);
+        assertThat(stats.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    void tenantIdAsParameter() {
+        TenantLineInnerInterceptor parameterized = new TenantLineInnerInterceptor(interceptor.getTenantLineHandler());
+        parameterized.setTenantIdAsParameter(true);
+        Configuration configuration = new Configuration();
+        List<ParameterMapping> mappings = Arrays.asList(new ParameterMapping.Builder(configuration, "name", String.class).build(),
+            new ParameterMapping.Builder(configuration, "id", Long.class).build());
+        BoundSql boundSql = new BoundSql(configuration, "update entity set name = ? where id = ?", mappings, null);
+        parameterized.bindTenantIdParameter(boundSql, configuration, parameterized.parserSingle(boundSql.getSql(), null));
+
+        assertThat(boundSql.getSql()).isEqualTo("UPDATE entity SET name = ? WHERE tenant_id = ? AND id = ?");
+        assertThat(boundSql.getParameterMappings()).extracting(ParameterMapping::getProperty)
+            .containsExactly("name", TenantLineInnerInterceptor.TENANT_ID_PARAMETER, "id");
+        assertThat(boundSql.getAdditionalParameter(TenantLineInnerInterceptor.TENANT_ID_PARAMETER)).isEqualTo(1L);
+
+        mappings = Arrays.asList(new ParameterMapping.Builder(configuration, "list[0].id", Long.class).build(),
+            new ParameterMapping.Builder(configuration, "list[1].id", Long.class).build(),
+            new ParameterMapping.Builder(configuration, "list[1].name", String.class).build());
+        boundSql = new BoundSql(configuration, "insert into entity (id,name) values (?,'?'),(?,?)", mappings, null);
+        parameterized.bindTenantIdParameter(boundSql, configuration, parameterized.parserMulti(boundSql.getSql(), null));
+        assertThat(boundSql.getSql()).isEqualTo("INSERT INTO entity (id, name, tenant_id) VALUES (?, '?', ?), (?, ?, ?)");
+        assertThat(boundSql.getParameterMappings()).extracting(ParameterMapping::getProperty)
+            .containsExactly("list[0].id", TenantLineInnerInterceptor.TENANT_ID_PARAMETER, "list[1].id", "list[1].name",
+                TenantLineInnerInterceptor.TENANT_ID_PARAMETER);
+    }
+
+    @Test
+    void fastRewrite() throws JSQLParserException {
+        TenantLineInnerInterceptor fast = new TenantLineInnerInterceptor(interceptor.getTenantLineHandler());
+        fast.setFastRewrite(true);
+        List<String> accepted = Arrays.asList(
+            "select * from entity",
+            "SELECT id,name FROM entity WHERE id = ?",
+            "select id, name from entity e where e.id = ? and e.name like ?",
+            "select id from entity as e where e.id = ?",
+            "select id from db.entity where id = ?",
+            "select `id` from `entity` where `id` = ?",
+            "select count(1) from entity where deleted = 0 and (name = ? or name = ?)",
+            "select id from entity where id = ? or name = ?",
+            "select id from entity where a = 1 and b = 2 or c = 3 order by id desc limit ?",
+            "select id from entity where (a = 1 or b = 2) and c in (?, ?, ?)",
+            "select id from entity where name = 'a or b' or id = ?",
+            "select extract(year from create_time) y from entity where id between ? and ?",
+            "select id from entity group by id having count(*) > 1 order by id",
+            "select id from entity where id = ? for update",
+            "select id from entity order by id limit 10 offset 5",
+            "select distinct name from entity e order by name",
+            "select id from with_as_entity where id = ?",
+            "update entity set name = ? where id = ?",
+            "update entity set name = ?",
+            "UPDATE entity e SET e.name = ? WHERE e.id = ? OR e.id = ?",
+            "update entity set version = version + 1 where id = ? and version = ? order by id limit 1",
+            "delete from entity where id = ?",
+            "delete from entity",
+            "DELETE FROM entity WHERE id = ? OR name = ?",
+            "delete from entity where id in (?, ?) limit 10");
+        for (String sql : accepted) {
+            assertThat(SingleTableSql.parse(sql)).as(sql).isNotNull();
+            assertThat(CCJSqlParserUtil.parse(fast.parserSingle(sql, null)).toString()).as(sql)
+                .isEqualTo(interceptor.parserSingle(sql, null));
+        }
+        // 走 JsqlParser 的 sql 结果完全一致
+        List<String> rejected = Arrays.asList(
+            "insert into entity (id,name) values (?,?)",
+            "select e.id from entity e left join entity2 e2 on e.id = e2.id where e.id = ?",
+            "select id from entity, entity2 where entity.id = entity2.id",
+            "select id from entity where id in (select id from entity2)",
+            "select * from (select id from entity) t",
+            "select id from entity union select id from entity2",
+            "with t as (select id from entity) select * from t",
+            "select id from entity /* comment */ where id = ?",
+            "select id from entity where id = ? -- comment",
+            "update entity set name = (select name from entity2 limit 1) where id = ?",
+            "delete e from entity e where e.id = ?");
+        for (String sql : rejected) {
+            assertThat(SingleTableSql.parse(sql)).as(sql).isNull();
+            assertThat(fast.parserSingle(sql, null)).as(sql).isEqualTo(interceptor.parserSingle(sql, null));
+        }
+        // where 之后的非标准子句不能当成 where 条件, 交给 JsqlParser(不支持时同样报错)
+        List<String> trailing = Arrays.asList(
+            "select id from entity where id = ? lock in share mode",
+            "select id from entity where id = ? option (recompile)",
+            "select id from entity where id = ? window w as (order by id)",
+            "select id from entity where id = ? optimize for 10 rows",
+            "select id from entity where id = ? settings max_threads = 1");
+        for (String sql : trailing) {
+            assertThat(SingleTableSql.parse(sql)).as(sql).isNull();
+            String expected;
+            try {
+                expected = interceptor.parserSingle(sql, null);
+            } catch (Exception e) {
+                assertThatThrownBy(() -> fast.parserSingle(sql, null)).as(sql).isInstanceOf(e.getClass());
+                continue;
+            }
+            assertThat(fast.parserSingle(sql, null)).as(sql).isEqualTo(expected);
+        }
+
+        assertThat(fast.parserSingle("select id from entity e where id = ? or id = ? order by id", null))
+            .isEqualTo("select id from entity e where (id = ? or id = ?) AND e.tenant_id = 1 order by id");
+        assertThat(fast.parserSingle("update entity set name = ?", null))
+            .isEqualTo("update entity set name = ? WHERE tenant_id = 1");
+    }
+
     void assertSql(String sql, String targetSql) {
         assertThat(interceptor.parserSingle(sql, null)).isEqualTo(targetSql);
     }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.toolkit;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author miemie
+ * @since 3.4.3
+ */
+class BulkIngestEncoderTest {
+
+    @Test
+    void postgreSql() {
+        assertThat(encode(BulkIngestEncoder.POSTGRE_SQL, 1L, "a\tb\\c\nd\re", null, true,
+            new byte[]{0x01, (byte) 0xab}, new BigDecimal("1E+3"), LocalDateTime.of(2021, 6, 1, 12, 30), LocalDate.of(2021, 6, 1)))
+            .isEqualTo("1\ta\\tb\\\\c\\nd\\re\t\\N\tt\t\\\\x01ab\t1000\t2021-06-01 12:30\t2021-06-01\n");
+        assertThat(BulkIngestEncoder.POSTGRE_SQL.supports(byte[].class)).isTrue();
+        assertThat(BulkIngestEncoder.POSTGRE_SQL.supports(Object.class)).isFalse();
+        // toString 格式数据库不一定接受的日期时间类型交给驱动
+        assertThat(BulkIngestEncoder.POSTGRE_SQL.supports(LocalDate.class)).isTrue();
+        assertThat(BulkIngestEncoder.POSTGRE_SQL.supports(ZonedDateTime.class)).isFalse();
+        assertThat(BulkIngestEncoder.MYSQL.supports(Instant.class)).isFalse();
+    }
+
+    @Test
+    void mysql() {
+        assertThat(encode(BulkIngestEncoder.MYSQL, 1, "中\0文", null, false))
+            .isEqualTo("1\t中\\0文\t\\N\t0\n");
+        assertThat(BulkIngestEncoder.MYSQL.supports(byte[].class)).isFalse();
+        assertThat(BulkIngestEncoder.MYSQL.supports(int.class)).isTrue();
+    }
+
+    @Test
+    void rowInputStream() throws IOException {
+        AtomicInteger read = new AtomicInteger();
+        Iterator<Integer> iterator = IntStream.range(0, 100_000).peek(i -> read.incrementAndGet()).iterator();
+        InputStream in = new BulkIngest.RowInputStream(iterator, i -> Arrays.asList(i, "row"), BulkIngestEncoder.MYSQL);
+        byte[] head = new byte[6];
+        assertThat(in.read(head)).isEqualTo(6);
+        assertThat(new String(head, StandardCharsets.UTF_8)).isEqualTo("0\trow\n");
+        // 按需读取, 不会一次取完
+        assertThat(read.get()).isLessThan(100_000);
+        long total = 6;
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) != -1; ) {
+            total += n;
+        }
+        assertThat(read).hasValue(100_000);
+        assertThat(in.read()).isEqualTo(-1);
+        assertThat(total).isEqualTo(IntStream.range(0, 100_000).map(i -> String.valueOf(i).length() + 5).sum());
+    }
+
+    private String encode(BulkIngestEncoder encoder, Object... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.write(Arrays.asList(values), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
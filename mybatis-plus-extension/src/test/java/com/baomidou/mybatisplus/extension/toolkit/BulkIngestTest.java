@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.toolkit;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableLogic;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.handler.TenantLineHandler;
+import com.baomidou.mybatisplus.extension.plugins.inner.DynamicTableNameInnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.TenantLineInnerInterceptor;
+import lombok.Data;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * @author miemie
+ * @since 3.4.3
+ */
+class BulkIngestTest {
+
+    private final AtomicInteger prepared = new AtomicInteger();
+
+    @Test
+    void ingest() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bulk_ingest;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table i_user (id bigint primary key, name varchar(30), created varchar(30))");
+        }
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new InnerInterceptor() {
+            @Override
+            public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
+                prepared.incrementAndGet();
+            }
+        });
+        configuration(dataSource, interceptor);
+        assertThat(BulkIngest.columns(SqlHelper.table(User.class), BulkIngestEncoder.POSTGRE_SQL))
+            .containsExactly(entry("id", "id"), entry("name", "name"), entry("created", "created"));
+        assertThat(BulkIngest.columns(SqlHelper.table(Auto.class), BulkIngestEncoder.MYSQL)).containsOnlyKeys("name");
+
+        // h2 没有原生导入, 改用 batch insert
+        long rows = new BulkIngest<>(User.class).setBatchSize(4)
+            .ingest(LongStream.rangeClosed(1, 10).mapToObj(i -> user(i, "n" + i)));
+        assertThat(rows).isEqualTo(10);
+        // 每 4 条 flush 一次
+        assertThat(prepared).hasValue(3);
+        Map<Long, String> names = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id, name, created from i_user")) {
+            while (rs.next()) {
+                names.put(rs.getLong(1), rs.getString(2) + "|" + rs.getString(3));
+            }
+        }
+        assertThat(names).hasSize(10).containsEntry(10L, "n10|fill");
+    }
+
+    @Test
+    void checkRows() {
+        // 原生导入跳过的行(主键冲突等)只是警告, 需要检查行数
+        BulkIngest.checkRows(10, 10, null);
+        assertThatThrownBy(() -> BulkIngest.checkRows(10, 9, null)).hasMessageContaining("wrote 9 of 10 rows");
+        assertThatThrownBy(() -> BulkIngest.checkRows(10, 10, new SQLWarning("Duplicate entry '1' for key 'PRIMARY'")))
+            .hasMessageContaining("Duplicate entry");
+    }
+
+    /**
+     * 原生导入不经过插件, insert 会被租户插件或者动态表名插件改写时改用 batch insert
+     */
+    @Test
+    void willRewriteInsert() {
+        String insertOne = SqlHelper.getSqlStatement(UserMapper.class, SqlMethod.INSERT_ONE);
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new PaginationInnerInterceptor());
+        Configuration configuration = configuration(new JdbcDataSource(), interceptor);
+        assertThat(SqlHelper.willRewriteInsert(configuration, SqlHelper.table(User.class), insertOne)).isFalse();
+
+        interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new TenantLineInnerInterceptor(() -> new LongValue(1)));
+        configuration = configuration(new JdbcDataSource(), interceptor);
+        assertThat(SqlHelper.willRewriteInsert(configuration, SqlHelper.table(User.class), insertOne)).isTrue();
+
+        interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new TenantLineInnerInterceptor(new TenantLineHandler() {
+            @Override
+            public Expression getTenantId() {
+                return new LongValue(1);
+            }
+
+            @Override
+            public boolean ignoreTable(String tableName) {
+                return "i_user".equals(tableName);
+            }
+        }));
+        configuration = configuration(new JdbcDataSource(), interceptor);
+        assertThat(SqlHelper.willRewriteInsert(configuration, SqlHelper.table(User.class), insertOne)).isFalse();
+
+        interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new DynamicTableNameInnerInterceptor(Collections.singletonMap("i_user", (sql, name) -> name + "_2021")));
+        configuration = configuration(new JdbcDataSource(), interceptor);
+        assertThat(SqlHelper.willRewriteInsert(configuration, SqlHelper.table(User.class), insertOne)).isTrue();
+    }
+
+    /**
+     * 逻辑删除字段为 null 时写入未删除值, 而不是 \N
+     */
+    @Test
+    void rowValues() {
+        Configuration configuration = configuration(new JdbcDataSource(), new MybatisPlusInterceptor());
+        Function<Object, List<?>> values = BulkIngest.rowValues(configuration, SqlHelper.table(Logic.class),
+            SqlHelper.getSqlStatement(LogicMapper.class, SqlMethod.INSERT_ONE), Arrays.asList("id", "name", "deleted"));
+        Logic logic = new Logic();
+        logic.setId(1L);
+        assertThat(values.apply(logic)).containsExactly(1L, null, "0");
+        logic.setDeleted(1);
+        assertThat(values.apply(logic)).containsExactly(1L, null, 1);
+    }
+
+    private Configuration configuration(JdbcDataSource dataSource, MybatisPlusInterceptor interceptor) {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addInterceptor(interceptor);
+        GlobalConfigUtils.getGlobalConfig(configuration).setMetaObjectHandler(new MetaObjectHandler() {
+            @Override
+            public void insertFill(MetaObject metaObject) {
+                strictInsertFill(metaObject, "created", String.class, "fill");
+            }
+
+            @Override
+            public void updateFill(MetaObject metaObject) {
+            }
+        });
+        configuration.addMapper(UserMapper.class);
+        configuration.addMapper(AutoMapper.class);
+        configuration.addMapper(LogicMapper.class);
+        new MybatisSqlSessionFactoryBuilder().build(configuration);
+        return configuration;
+    }
+
+    private User user(Long id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        return user;
+    }
+
+    @Data
+    @TableName("i_user")
+    public static class User {
+        private Long id;
+        private String name;
+        @TableField(fill = FieldFill.INSERT)
+        private String created;
+    }
+
+    @Data
+    @TableName("i_auto")
+    public static class Auto {
+        @TableId(type = IdType.AUTO)
+        private Long id;
+        private String name;
+    }
+
+    @Data
+    @TableName("i_logic")
+    public static class Logic {
+        private Long id;
+        private String name;
+        @TableLogic
+        private Integer deleted;
+    }
+
+    public interface UserMapper extends BaseMapper<User> {
+    }
+
+    public interface AutoMapper extends BaseMapper<Auto> {
+    }
+
+    public interface LogicMapper extends BaseMapper<Logic> {
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.toolkit;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.baomidou.mybatisplus.extension.injector.BatchSqlInjector;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.TenantLineInnerInterceptor;
+import lombok.Data;
+import net.sf.jsqlparser.expression.LongValue;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author miemie
+ * @since 3.4.3
+ */
+class BulkLoaderTest {
+
+    private static final ThreadLocal<Long> TENANT = new ThreadLocal<>();
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    private final List<Object> filled = Collections.synchronizedList(new ArrayList<>());
+
+    private JdbcDataSource dataSource(String db) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + db + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table l_user (id bigint primary key, name varchar(30), created varchar(30))");
+            statement.execute("create table l_tenant (id bigint primary key, name varchar(30), tenant_id bigint)");
+        }
+        return dataSource;
+    }
+
+    private void configuration(DataSource dataSource, TransactionFactory transactionFactory, InnerInterceptor... interceptors) {
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        for (InnerInterceptor inner : interceptors) {
+            interceptor.addInnerInterceptor(inner);
+        }
+        interceptor.addInnerInterceptor(new InnerInterceptor() {
+            @Override
+            public void beforeUpdate(Executor executor, MappedStatement ms, Object parameter) {
+                executed.add(ms.getId().substring(ms.getId().lastIndexOf('.') + 1));
+            }
+        });
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setEnvironment(new Environment("test", transactionFactory, dataSource));
+        configuration.addInterceptor(interceptor);
+        GlobalConfigUtils.getGlobalConfig(configuration).setSqlInjector(new BatchSqlInjector(DbType.H2));
+        GlobalConfigUtils.getGlobalConfig(configuration).setMetaObjectHandler(new MetaObjectHandler() {
+            @Override
+            public void insertFill(MetaObject metaObject) {
+                if (metaObject.hasSetter("created")) {
+                    strictInsertFill(metaObject, "created", String.class, "fill");
+                }
+                filled.add(metaObject.getValue("id"));
+            }
+
+            @Override
+            public void updateFill(MetaObject metaObject) {
+            }
+        });
+        configuration.addMapper(UserMapper.class);
+        configuration.addMapper(TenantMapper.class);
+        new MybatisSqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @Test
+    void load() throws SQLException {
+        JdbcDataSource dataSource = dataSource("bulk_loader");
+        configuration(dataSource, new JdbcTransactionFactory());
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("insert into l_user (id, name) values (100, 'old')");
+        }
+        // 第 3 个分区(9 ~ 12)主键冲突
+        BulkLoader.Result<User> result = new BulkLoader<>(User.class).setParallelism(3).setChunkSize(4)
+            .load(LongStream.rangeClosed(1, 25).mapToObj(i -> user(i == 10 ? 100 : i, "n" + i)));
+        assertThat(result.getPartitions()).hasSize(7).extracting(BulkLoader.Partition::getIndex)
+            .containsExactly(0, 1, 2, 3, 4, 5, 6);
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getSuccessRows()).isEqualTo(21);
+        assertThat(result.getFailedPartitions()).singleElement().satisfies(p -> {
+            assertThat(p.getIndex()).isEqualTo(2);
+            assertThat(p.getError()).isNotNull();
+            assertThat(p.getRecords()).extracting(User::getId).containsExactly(9L, 100L, 11L, 12L);
+        });
+        // 失败的分区整体回滚
+        assertThat(names(dataSource)).hasSize(22).containsEntry(100L, "old|null").doesNotContainKeys(9L, 11L, 12L);
+
+        // 按分区键分配通道, 每个通道内单独分区
+        executed.clear();
+        result = new BulkLoader<>(User.class).setParallelism(2).setChunkSize(3).setValuesInsert(true)
+            .setPartitionBy(u -> u.getId() % 2).load(LongStream.rangeClosed(31, 40).mapToObj(i -> user(i, "n" + i)));
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getPartitions()).extracting(BulkLoader.Partition::getSize).containsExactlyInAnyOrder(3, 3, 2, 2);
+        assertThat(executed).hasSize(4).containsOnly("insertBatchSomeColumn");
+        assertThat(names(dataSource)).hasSize(32).containsEntry(40L, "n40|fill");
+
+        // 同一通道内按读取顺序写入
+        filled.clear();
+        assertThat(new BulkLoader<>(User.class).setParallelism(2).setChunkSize(2).setPartitionBy(u -> u.getId() % 2)
+            .load(LongStream.rangeClosed(41, 60).mapToObj(i -> user(i, "n" + i))).isSuccess()).isTrue();
+        assertThat(filled).filteredOn(id -> (Long) id % 2 == 0).containsExactlyElementsOf(
+            LongStream.rangeClosed(41, 60).filter(i -> i % 2 == 0).boxed().collect(Collectors.toList()));
+        assertThat(filled).filteredOn(id -> (Long) id % 2 == 1).containsExactlyElementsOf(
+            LongStream.rangeClosed(41, 60).filter(i -> i % 2 == 1).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * mybatis-spring 管理的连接默认 autoCommit, 分区失败时也要整体回滚, 结束后恢复 autoCommit
+     */
+    @Test
+    void springManagedTransaction() throws SQLException {
+        JdbcDataSource h2 = dataSource("bulk_loader_spring");
+        try (Connection connection = h2.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("insert into l_user (id, name) values (6, 'old')");
+        }
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(h2.getConnection(), true);
+        configuration(dataSource, new SpringManagedTransactionFactory());
+        BulkLoader.Result<User> result = new BulkLoader<>(User.class).setParallelism(1).setChunkSize(4)
+            .load(LongStream.rangeClosed(1, 8).mapToObj(i -> user(i, "n" + i)));
+        assertThat(result.getSuccessRows()).isEqualTo(4);
+        assertThat(result.getFailedPartitions()).singleElement()
+            .satisfies(p -> assertThat(p.getRecords()).extracting(User::getId).containsExactly(5L, 6L, 7L, 8L));
+        assertThat(names(h2)).containsOnlyKeys(1L, 2L, 3L, 4L, 6L).containsEntry(6L, "old|null");
+        assertThat(dataSource.getConnection().getAutoCommit()).isTrue();
+        dataSource.destroy();
+    }
+
+    /**
+     * 租户插件依赖调用线程的上下文, 没有设置 taskDecorator 时拒绝导入
+     */
+    @Test
+    void threadContext() throws SQLException {
+        JdbcDataSource dataSource = dataSource("bulk_loader_tenant");
+        configuration(dataSource, new JdbcTransactionFactory(), new TenantLineInnerInterceptor(() -> new LongValue(TENANT.get())));
+        TENANT.set(7L);
+        try {
+            assertThatThrownBy(() -> new BulkLoader<>(Tenant.class).load(LongStream.rangeClosed(1, 4).mapToObj(this::tenant)))
+                .isInstanceOf(MybatisPlusException.class).hasMessageContaining("taskDecorator");
+
+            BulkLoader.Result<Tenant> result = new BulkLoader<>(Tenant.class).setParallelism(2).setChunkSize(2)
+                .setTaskDecorator(task -> {
+                    Long tenant = TENANT.get();
+                    return () -> {
+                        TENANT.set(tenant);
+                        try {
+                            task.run();
+                        } finally {
+                            TENANT.remove();
+                        }
+                    };
+                }).load(LongStream.rangeClosed(1, 4).mapToObj(this::tenant));
+            assertThat(result.isSuccess()).isTrue();
+        } finally {
+            TENANT.remove();
+        }
+        List<Long> tenants = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select tenant_id from l_tenant")) {
+            while (rs.next()) {
+                tenants.add(rs.getLong(1));
+            }
+        }
+        assertThat(tenants).containsExactly(7L, 7L, 7L, 7L);
+    }
+
+    @Test
+    void backpressure() throws Exception {
+        configuration(dataSource("bulk_loader_backpressure"), new JdbcTransactionFactory());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        // 占住唯一的写入线程
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicInteger read = new AtomicInteger();
+        Iterator<User> iterator = LongStream.rangeClosed(1, 10).mapToObj(i -> {
+            read.incrementAndGet();
+            return user(i, "n" + i);
+        }).iterator();
+        BulkLoader<User> loader = new BulkLoader<>(User.class).setParallelism(1).setChunkSize(1).setExecutorService(executor);
+        CompletableFuture<BulkLoader.Result<User>> result = CompletableFuture.supplyAsync(() -> loader.load(iterator));
+        try {
+            // 在途的分区最多 2 * parallelism 个, 读到第 3 条时等待
+            Thread.sleep(200);
+            assertThat(read).hasValue(3);
+            assertThat(result).isNotDone();
+        } finally {
+            latch.countDown();
+        }
+        assertThat(result.get(10, TimeUnit.SECONDS).getSuccessRows()).isEqualTo(10);
+        executor.shutdown();
+    }
+
+    private Map<Long, String> names(JdbcDataSource dataSource) throws SQLException {
+        Map<Long, String> rows = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id, name, created from l_user")) {
+            while (rs.next()) {
+                rows.put(rs.getLong(1), rs.getString(2) + "|" + rs.getString(3));
+            }
+        }
+        return rows;
+    }
+
+    private User user(long id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        return user;
+    }
+
+    private Tenant tenant(long id) {
+        Tenant tenant = new Tenant();
+        tenant.setId(id);
+        return tenant;
+    }
+
+    @Data
+    @TableName("l_user")
+    public static class User {
+        private Long id;
+        private String name;
+        @TableField(fill = FieldFill.INSERT)
+        private String created;
+    }
+
+    @Data
+    @TableName("l_tenant")
+    public static class Tenant {
+        private Long id;
+        private String name;
+    }
+
+    public interface UserMapper extends BaseMapper<User> {
+    }
+
+    public interface TenantMapper extends BaseMapper<Tenant> {
+    }
+}
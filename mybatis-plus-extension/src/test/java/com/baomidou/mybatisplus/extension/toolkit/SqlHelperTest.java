@@ -0,0 +1,626 @@
+/*
+ * Copyright (c) 2011-2021, baomidou (jobob@qq.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baomidou.mybatisplus.extension.toolkit;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableLogic;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.annotation.Version;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.baomidou.mybatisplus.extension.injector.BatchSqlInjector;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.TenantLineInnerInterceptor;
+import net.sf.jsqlparser.expression.LongValue;
+import lombok.Data;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author miemie
+ * @since 3.4.3
+ */
+class SqlHelperTest {
+
+    private final Log log = LogFactory.getLog(SqlHelperTest.class);
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger prepared = new AtomicInteger();
+    private final Set<Thread> queried = ConcurrentHashMap.newKeySet();
+
+    private JdbcDataSource dataSource(String db) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + db + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table v_user (id bigint primary key, name varchar(30), created varchar(30))");
+            statement.execute("create table v_auto (id bigint auto_increment primary key, name varchar(30))");
+            statement.execute("create table v_logic (id bigint primary key, name varchar(30), deleted int not null)");
+            statement.execute("create table v_version (id bigint primary key, name varchar(30), modified varchar(30), version int)");
+            statement.execute("create table v_code (code varchar_ignorecase(10) primary key, name varchar(30))");
+        }
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new InnerInterceptor() {
+            @Override
+            public void beforeQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                    ResultHandler resultHandler, BoundSql boundSql) {
+                executed.add(ms.getId().substring(ms.getId().lastIndexOf('.') + 1));
+                queried.add(Thread.currentThread());
+            }
+
+            @Override
+            public void beforeUpdate(Executor executor, MappedStatement ms, Object parameter) {
+                executed.add(ms.getId().substring(ms.getId().lastIndexOf('.') + 1));
+            }
+
+            @Override
+            public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
+                prepared.incrementAndGet();
+            }
+        });
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addInterceptor(interceptor);
+        GlobalConfigUtils.getGlobalConfig(configuration).setMetaObjectHandler(new MetaObjectHandler() {
+            @Override
+            public void insertFill(MetaObject metaObject) {
+                strictInsertFill(metaObject, "created", String.class, "fill");
+            }
+
+            @Override
+            public void updateFill(MetaObject metaObject) {
+            }
+        });
+        GlobalConfigUtils.getGlobalConfig(configuration).setSqlInjector(new BatchSqlInjector(DbType.H2));
+        configuration.addMapper(UserMapper.class);
+        configuration.addMapper(AutoMapper.class);
+        configuration.addMapper(LogicMapper.class);
+        configuration.addMapper(CodeMapper.class);
+        configuration.addMapper(VersionMapper.class);
+        new MybatisSqlSessionFactoryBuilder().build(configuration);
+        return dataSource;
+    }
+
+    /**
+     * 批量方法需要启动时注入, 没有注入时直接报错而不是运行时注入
+     */
+    @Test
+    void notInjected() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:not_injected;DB_CLOSE_DELAY=-1");
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(UserMapper.class);
+        new MybatisSqlSessionFactoryBuilder().build(configuration);
+        assertThat(configuration.hasStatement(UserMapper.class.getName() + ".insertBatchSomeColumn")).isFalse();
+        assertThatThrownBy(() -> SqlHelper.saveBatchValues(User.class, UserMapper.class, log, Collections.singletonList(user(1L, "u")), 10))
+            .isInstanceOf(MybatisPlusException.class)
+            .hasMessageContaining("insertBatchSomeColumn is not injected into " + UserMapper.class.getName())
+            .hasMessageContaining(BatchSqlInjector.class.getName());
+        assertThatThrownBy(() -> SqlHelper.updateAllColumnBatchById(User.class, UserMapper.class, log, Collections.singletonList(user(1L, "u")), 10))
+            .isInstanceOf(MybatisPlusException.class)
+            .hasMessageContaining("alwaysUpdateSomeColumnById is not injected");
+        assertThat(configuration.hasStatement(UserMapper.class.getName() + ".insertBatchSomeColumn")).isFalse();
+    }
+
+    @Test
+    void saveBatchValues() throws SQLException {
+        JdbcDataSource dataSource = dataSource("save_batch_values");
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            User user = new User();
+            user.setName("u" + i);
+            users.add(user);
+        }
+        assertThat(SqlHelper.saveBatchValues(User.class, UserMapper.class, log, users, 4)).isTrue();
+        // 10 行拆成 4 + 4 + 2
+        assertThat(executed).containsExactly("insertBatchSomeColumn", "insertBatchSomeColumn", "insertBatchSomeColumn");
+        assertThat(users).allSatisfy(u -> {
+            assertThat(u.getId()).isNotNull();
+            assertThat(u.getCreated()).isEqualTo("fill");
+        });
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select count(*) from v_user where created = 'fill'")) {
+            rs.next();
+            assertThat(rs.getInt(1)).isEqualTo(10);
+        }
+
+        executed.clear();
+        List<Auto> autos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Auto auto = new Auto();
+            auto.setName("a" + i);
+            autos.add(auto);
+        }
+        assertThat(SqlHelper.saveBatchValues(Auto.class, AutoMapper.class, log, autos, 2)).isTrue();
+        assertThat(executed).hasSize(3);
+        // 自增主键回写
+        assertThat(autos).extracting(Auto::getId).containsExactly(1L, 2L, 3L, 4L, 5L);
+
+        assertThat(SqlHelper.saveBatchValues(Auto.class, AutoMapper.class, log, new ArrayList<>(), 2)).isFalse();
+    }
+
+    @Test
+    void logicDelete() throws SQLException {
+        dataSource("logic_delete");
+        List<Logic> logics = new ArrayList<>();
+        for (long i = 1; i <= 3; i++) {
+            Logic logic = new Logic();
+            logic.setId(i);
+            logic.setName("l" + i);
+            logics.add(logic);
+        }
+        // 逻辑删除字段为 null 时写入未删除值
+        assertThat(SqlHelper.saveBatchValues(Logic.class, LogicMapper.class, log, logics, 10)).isTrue();
+        assertThat(new BulkLoader<>(Logic.class).setValuesInsert(true)
+            .load(LongStream.rangeClosed(4, 6).mapToObj(i -> {
+                Logic logic = new Logic();
+                logic.setId(i);
+                return logic;
+            })).isSuccess()).isTrue();
+        List<Logic> list;
+        try (SqlSession sqlSession = SqlHelper.sqlSession(Logic.class)) {
+            list = sqlSession.getMapper(LogicMapper.class).selectList(null);
+        }
+        assertThat(list).extracting(Logic::getId).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L);
+        assertThat(list).extracting(Logic::getDeleted).containsOnly(0);
+    }
+
+    @Test
+    void saveOrUpdateBatch() throws SQLException {
+        JdbcDataSource dataSource = dataSource("save_or_update_batch");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("insert into v_user (id, name) values (1, 'old'), (2, 'old'), (3, 'old')");
+        }
+        List<User> users = new ArrayList<>();
+        users.add(user(1L, "new1"));
+        users.add(user(2L, "new2"));
+        users.add(user(null, "generated"));
+        users.add(user(100L, "new100"));
+        users.add(user(3L, "new3"));
+        users.add(user(100L, "dup100"));
+        assertThat(SqlHelper.saveOrUpdateBatch(User.class, UserMapper.class, log, users, 3)).isTrue();
+        // 每批只查询一次
+        assertThat(executed).containsExactly(
+            "selectList", "updateById", "updateById", "insert",
+            "selectList", "insert", "updateById", "updateById");
+        Map<Long, String> rows = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id, name from v_user")) {
+            while (rs.next()) {
+                rows.put(rs.getLong(1), rs.getString(2));
+            }
+        }
+        assertThat(rows).hasSize(5).containsEntry(1L, "new1").containsEntry(2L, "new2").containsEntry(3L, "new3")
+            .containsEntry(100L, "dup100").containsEntry(users.get(2).getId(), "generated");
+    }
+
+    /**
+     * 数据库按排序规则认为相等、java 里不相等的主键逐条确认
+     */
+    @Test
+    void saveOrUpdateBatchCollation() throws SQLException {
+        JdbcDataSource dataSource = dataSource("save_or_update_batch_collation");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("insert into v_code (code, name) values ('a', 'old'), ('b', 'old')");
+        }
+        List<Code> codes = new ArrayList<>();
+        codes.add(code("A", "newA"));
+        codes.add(code("b", "newB"));
+        codes.add(code("c", "newC"));
+        assertThat(SqlHelper.saveOrUpdateBatch(Code.class, CodeMapper.class, log, codes, 3)).isTrue();
+        assertThat(executed).containsExactly("selectList", "selectById", "updateById", "updateById", "selectById", "insert");
+        Map<String, String> rows = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select code, name from v_code")) {
+            while (rs.next()) {
+                rows.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        assertThat(rows).containsOnly(entry("a", "newA"), entry("b", "newB"), entry("c", "newC"));
+    }
+
+    @Test
+    void upsertBatch() throws SQLException {
+        JdbcDataSource dataSource = dataSource("upsert_batch");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("insert into v_user (id, name, created) values (1, 'old', 'keep'), (2, 'old', 'keep')");
+            statement.execute("insert into v_logic (id, name, deleted) values (1, 'old', 1)");
+        }
+        List<User> users = new ArrayList<>();
+        users.add(user(1L, "new1"));
+        users.add(user(5L, "new5"));
+        users.add(user(null, "generated"));
+        assertThat(SqlHelper.upsertBatch(User.class, UserMapper.class, log, users, 2)).isTrue();
+        // 不需要先查询
+        assertThat(executed).containsExactly("upsertBatch", "upsertBatch");
+        Map<Long, String> rows = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id, name from v_user")) {
+            while (rs.next()) {
+                rows.put(rs.getLong(1), rs.getString(2));
+            }
+        }
+        assertThat(rows).hasSize(4).containsEntry(1L, "new1").containsEntry(2L, "old").containsEntry(5L, "new5")
+            .containsEntry(users.get(2).getId(), "generated");
+        // 已存在时不更新填充策略为 INSERT 的字段
+        assertThat(names(dataSource)).containsEntry(1L, "new1|keep").containsEntry(5L, "new5|fill");
+
+        // 已存在时不更新逻辑删除字段, 插入时写入未删除值
+        Logic exist = new Logic();
+        exist.setId(1L);
+        exist.setName("new1");
+        Logic inserted = new Logic();
+        inserted.setId(2L);
+        assertThat(SqlHelper.upsertBatch(Logic.class, LogicMapper.class, log, Arrays.asList(exist, inserted), 10)).isTrue();
+        Map<Long, Integer> deleted = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id, name, deleted from v_logic")) {
+            while (rs.next()) {
+                deleted.put(rs.getLong(1), rs.getInt(3));
+                assertThat(rs.getString(2)).isEqualTo(rs.getLong(1) == 1L ? "new1" : null);
+            }
+        }
+        assertThat(deleted).containsOnly(entry(1L, 1), entry(2L, 0));
+
+        // 只有 insertFill, 已存在时不把填充策略为 UPDATE 的字段更新为 null; 乐观锁字段加 1 而不是用实体中的值
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("insert into v_version (id, name, modified, version) values (1, 'old', 'keep', 3)");
+        }
+        Versioned stale = new Versioned();
+        stale.setId(1L);
+        stale.setName("new1");
+        stale.setVersion(1);
+        Versioned created = new Versioned();
+        created.setId(2L);
+        created.setName("new2");
+        created.setVersion(1);
+        assertThat(SqlHelper.upsertBatch(Versioned.class, VersionMapper.class, log, Arrays.asList(stale, created), 10)).isTrue();
+        List<String> versions = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id, name, modified, version from v_version order by id")) {
+            while (rs.next()) {
+                versions.add(rs.getLong(1) + "|" + rs.getString(2) + "|" + rs.getString(3) + "|" + rs.getInt(4));
+            }
+        }
+        assertThat(versions).containsExactly("1|new1|keep|4", "2|new2|null|1");
+
+        // 自增主键为空的只能插入
+        executed.clear();
+        Auto auto = new Auto();
+        auto.setName("a");
+        Auto input = new Auto();
+        input.setId(7L);
+        input.setName("b");
+        assertThat(SqlHelper.upsertBatch(Auto.class, AutoMapper.class, log, Arrays.asList(auto, input), 10)).isTrue();
+        assertThat(executed).containsExactly("upsertBatch", "insertBatchSomeColumn");
+        assertThat(auto.getId()).isNotNull();
+    }
+
+    @Test
+    void updateBatchById() throws SQLException {
+        JdbcDataSource dataSource = dataSource("update_batch_by_id");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("insert into v_user (id, name, created) values (1, 'old', 'c'), (2, 'old', 'c'), (3, 'old', 'c'),"
+                + " (4, 'old', 'c'), (5, 'old', 'c'), (6, 'old', 'c')");
+        }
+        List<User> users = new ArrayList<>();
+        for (long i = 1; i <= 6; i++) {
+            User user = user(i, i % 2 == 1 || i == 6 ? "new" + i : null);
+            if (i % 2 == 0) {
+                user.setCreated("c" + i);
+            }
+            users.add(user);
+        }
+        assertThat(SqlHelper.updateBatchById(User.class, UserMapper.class, log, users, 10)).isTrue();
+        // 按 set 的字段分成 {name}, {created}, {name, created} 三组
+        assertThat(prepared).hasValue(3);
+        assertThat(names(dataSource)).containsEntry(1L, "new1|c").containsEntry(2L, "old|c2").containsEntry(6L, "new6|c6");
+
+        // 同一条数据的多次更新保持顺序
+        prepared.set(0);
+        User first = user(1L, "first");
+        first.setCreated("first");
+        assertThat(SqlHelper.updateBatchById(User.class, UserMapper.class, log,
+            Arrays.asList(first, user(1L, "second"), user(2L, "second")), 10)).isTrue();
+        assertThat(prepared).hasValue(2);
+        assertThat(names(dataSource)).containsEntry(1L, "second|first").containsEntry(2L, "second|c2");
+
+        // 更新所有字段, 只有一条 sql
+        prepared.set(0);
+        User created = new User();
+        created.setId(2L);
+        created.setCreated("all");
+        assertThat(SqlHelper.updateAllColumnBatchById(User.class, UserMapper.class, log,
+            Arrays.asList(user(1L, "all"), created), 10)).isTrue();
+        assertThat(prepared).hasValue(1);
+        assertThat(names(dataSource)).containsEntry(1L, "all|null").containsEntry(2L, "null|all");
+    }
+
+    @Test
+    void batchIds() throws SQLException {
+        JdbcDataSource dataSource = dataSource("batch_ids");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("insert into v_user (id, name) select x, 'n' || x from system_range(1, 2500)");
+        }
+        List<Long> ids = LongStream.rangeClosed(1, 2600).boxed().collect(Collectors.toList());
+        ids.add(1L);
+        // 去重后 2600 个, 分成 1000 + 1000 + 600(补齐到 1000)
+        List<List<Serializable>> chunks = SqlHelper.idChunks(ids, 1000);
+        assertThat(chunks).extracting(List::size).containsExactly(1000, 1000, 1000);
+        assertThat(chunks.get(2).get(999)).isEqualTo(2600L);
+        assertThat(SqlHelper.idChunks(Arrays.asList(1L, 2L, 3L, 4L, 5L), 1000)).singleElement()
+            .isEqualTo(Arrays.asList(1L, 2L, 3L, 4L, 5L, 5L, 5L, 5L));
+        assertThat(SqlHelper.idChunks(Collections.singletonList(1L), 1000)).singleElement().isEqualTo(Collections.singletonList(1L));
+
+        SqlSessionManager sqlSessionManager = SqlSessionManager.newInstance(SqlHelper.sqlSessionFactory(User.class));
+        UserMapper mapper = sqlSessionManager.getMapper(UserMapper.class);
+        assertThat(SqlHelper.selectBatchIds(mapper, ids, 1000)).hasSize(2500);
+        assertThat(executed).containsExactly("selectBatchIds", "selectBatchIds", "selectBatchIds");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            queried.clear();
+            assertThat(SqlHelper.selectBatchIds(mapper, ids, 700, executor)).extracting(User::getId)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 2500).boxed().collect(Collectors.toList()));
+            assertThat(queried).doesNotContain(Thread.currentThread());
+
+            // spring 事务中不并行, 在当前线程依次查询
+            queried.clear();
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            try {
+                assertThat(SqlHelper.selectBatchIds(mapper, ids, 700, executor)).hasSize(2500);
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+            }
+            assertThat(queried).containsExactly(Thread.currentThread());
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(SqlHelper.deleteBatchIds(mapper, ids.subList(0, 1500), 1000)).isEqualTo(1500);
+        assertThat(names(dataSource)).hasSize(1000).doesNotContainKey(1500L);
+    }
+
+    private Map<Long, String> names(JdbcDataSource dataSource) throws SQLException {
+        Map<Long, String> rows = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id, name, created from v_user")) {
+            while (rs.next()) {
+                rows.put(rs.getLong(1), rs.getString(2) + "|" + rs.getString(3));
+            }
+        }
+        return rows;
+    }
+
+    private User user(Long id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        return user;
+    }
+
+    private Code code(String code, String name) {
+        Code entity = new Code();
+        entity.setCode(code);
+        entity.setName(name);
+        return entity;
+    }
+
+    /**
+     * 租户插件无法改写 upsert 语句, 退化为先查询再 insert 或 updateById, 不会更新其他租户的数据
+     */
+    @Test
+    void upsertBatchTenant() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:upsert_batch_tenant;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table v_tenant (id bigint primary key, name varchar(30), tenant_id bigint)");
+            statement.execute("insert into v_tenant (id, name, tenant_id) values (1, 'old', 1), (2, 'other', 2)");
+        }
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new TenantLineInnerInterceptor(() -> new LongValue(1)));
+        interceptor.addInnerInterceptor(new InnerInterceptor() {
+            @Override
+            public void beforeUpdate(Executor executor, MappedStatement ms, Object parameter) {
+                executed.add(ms.getId().substring(ms.getId().lastIndexOf('.') + 1));
+            }
+        });
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addInterceptor(interceptor);
+        GlobalConfigUtils.getGlobalConfig(configuration).setSqlInjector(new BatchSqlInjector(DbType.H2));
+        configuration.addMapper(TenantMapper.class);
+        new MybatisSqlSessionFactoryBuilder().build(configuration);
+
+        Tenant exist = new Tenant();
+        exist.setId(1L);
+        exist.setName("new1");
+        Tenant added = new Tenant();
+        added.setId(3L);
+        added.setName("new3");
+        assertThat(SqlHelper.upsertBatch(Tenant.class, TenantMapper.class, log, Arrays.asList(exist, added), 10)).isTrue();
+        assertThat(executed).containsExactly("updateById", "insert");
+
+        // 其他租户的主键: 查询不到, insert 时主键冲突, 而不是覆盖其他租户的数据
+        Tenant other = new Tenant();
+        other.setId(2L);
+        other.setName("stolen");
+        assertThatThrownBy(() -> SqlHelper.upsertBatch(Tenant.class, TenantMapper.class, log, Collections.singletonList(other), 10))
+            .isInstanceOf(DuplicateKeyException.class);
+        List<String> rows = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id, name, tenant_id from v_tenant order by id")) {
+            while (rs.next()) {
+                rows.add(rs.getLong(1) + "|" + rs.getString(2) + "|" + rs.getLong(3));
+            }
+        }
+        assertThat(rows).containsExactly("1|new1|1", "2|other|2", "3|new3|1");
+
+        // 租户插件从调用线程获取租户, 查询不能并行
+        TenantMapper mapper = SqlSessionManager.newInstance(SqlHelper.sqlSessionFactory(Tenant.class)).getMapper(TenantMapper.class);
+        assertThat(SqlHelper.parallelSafe(mapper)).isFalse();
+    }
+
+    /**
+     * jdbc:sqlserver: 解析为 SQL_SERVER2005, 按数据库主版本判断是否支持 MERGE
+     */
+    @Test
+    void upsertDbType() throws SQLException {
+        assertThat(SqlHelper.upsertDbType(session("jdbc:sqlserver://localhost:1433;databaseName=test", 10))).isEqualTo(DbType.SQL_SERVER2005);
+        assertThat(SqlHelper.upsertDbType(session("jdbc:sqlserver://localhost:1433;databaseName=test", 9))).isNull();
+        assertThat(SqlHelper.upsertDbType(session("jdbc:mysql://localhost:3306/test", 5))).isEqualTo(DbType.MYSQL);
+        assertThat(SqlHelper.upsertDbType(session("jdbc:sybase:Tds:localhost:5000/test", 16))).isNull();
+    }
+
+    private SqlSession session(String url, int majorVersion) throws SQLException {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getURL()).thenReturn(url);
+        when(metaData.getDatabaseMajorVersion()).thenReturn(majorVersion);
+        Connection connection = mock(Connection.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        SqlSession sqlSession = mock(SqlSession.class);
+        when(sqlSession.getConnection()).thenReturn(connection);
+        return sqlSession;
+    }
+
+    @Test
+    void insertValuesRows() {
+        assertThat(SqlHelper.insertValuesRows(DbType.MYSQL, 10, 1000)).isEqualTo(1000);
+        assertThat(SqlHelper.insertValuesRows(DbType.POSTGRE_SQL, 100, 1000)).isEqualTo(327);
+        assertThat(SqlHelper.insertValuesRows(DbType.SQL_SERVER, 3, 5000)).isEqualTo(699);
+        assertThat(SqlHelper.insertValuesRows(DbType.SQL_SERVER, 1, 5000)).isEqualTo(1000);
+        assertThat(SqlHelper.insertValuesRows(DbType.SQLITE, 10, 1000)).isEqualTo(99);
+        assertThat(SqlHelper.insertValuesRows(DbType.ORACLE, 10, 1000)).isZero();
+    }
+
+    @Data
+    @TableName("v_user")
+    public static class User {
+        private Long id;
+        private String name;
+        @TableField(fill = FieldFill.INSERT)
+        private String created;
+    }
+
+    @Data
+    @TableName("v_auto")
+    public static class Auto {
+        @TableId(type = IdType.AUTO)
+        private Long id;
+        private String name;
+    }
+
+    @Data
+    @TableName("v_logic")
+    public static class Logic {
+        private Long id;
+        private String name;
+        @TableLogic
+        private Integer deleted;
+    }
+
+    @Data
+    @TableName("v_code")
+    public static class Code {
+        @TableId(type = IdType.INPUT)
+        private String code;
+        private String name;
+    }
+
+    public interface CodeMapper extends BaseMapper<Code> {
+    }
+
+    @Data
+    @TableName("v_tenant")
+    public static class Tenant {
+        private Long id;
+        private String name;
+    }
+
+    public interface TenantMapper extends BaseMapper<Tenant> {
+    }
+
+    @Data
+    @TableName("v_version")
+    public static class Versioned {
+        private Long id;
+        private String name;
+        @TableField(fill = FieldFill.UPDATE)
+        private String modified;
+        @Version
+        private Integer version;
+    }
+
+    public interface VersionMapper extends BaseMapper<Versioned> {
+    }
+
+    public interface UserMapper extends BaseMapper<User> {
+    }
+
+    public interface LogicMapper extends BaseMapper<Logic> {
+    }
+
+    public interface AutoMapper extends BaseMapper<Auto> {
+    }
+}